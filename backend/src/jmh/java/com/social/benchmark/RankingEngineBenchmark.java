@@ -0,0 +1,180 @@
+package com.social.benchmark;
+
+import com.social.config.RankingMemberSerializer;
+import com.social.repository.PostRepository;
+import com.social.service.MemoryRankingEngine;
+import com.social.service.RankingEngine;
+import com.social.service.RankingService;
+import com.social.service.RedisRankingEngine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 排行榜引擎基准测试：进程内引擎（memory）与Redis引擎（redis）的查询排名、读取榜首页面、获取邻居和增量更新耗时
+ * Redis引擎连接 -Dredis.host / -Dredis.port 指定的Redis，默认 localhost:6379，使用 -Dredis.database 指定的库（默认15），
+ * 测试前后删除该库中的 ranking:* 数据，不要指向线上使用的库
+ * 运行：mvn -Pjmh test-compile exec:exec -Djmh.args="RankingEngineBenchmark"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RankingEngineBenchmark {
+    
+    @Param({"memory", "redis"})
+    private String engineType;
+    
+    @Param({"20000"})
+    private int userCount;
+    
+    private RankingEngine engine;
+    private LettuceConnectionFactory connectionFactory;
+    private StringRedisTemplate stringRedisTemplate;
+    
+    @Setup(Level.Trial)
+    public void setUp() {
+        if ("redis".equals(engineType)) {
+            RedisStandaloneConfiguration configuration = new RedisStandaloneConfiguration(
+                System.getProperty("redis.host", "localhost"), Integer.getInteger("redis.port", 6379));
+            configuration.setDatabase(Integer.getInteger("redis.database", 15));
+            connectionFactory = new LettuceConnectionFactory(configuration);
+            connectionFactory.afterPropertiesSet();
+            
+            // 与RedisConfig中的排行榜模板一致
+            RedisTemplate<String, Long> rankingRedisTemplate = new RedisTemplate<>();
+            rankingRedisTemplate.setConnectionFactory(connectionFactory);
+            rankingRedisTemplate.setKeySerializer(new StringRedisSerializer());
+            rankingRedisTemplate.setValueSerializer(RankingMemberSerializer.INSTANCE);
+            rankingRedisTemplate.afterPropertiesSet();
+            stringRedisTemplate = new StringRedisTemplate(connectionFactory);
+            
+            RedisRankingEngine redisEngine = new RedisRankingEngine(rankingRedisTemplate, stringRedisTemplate);
+            ReflectionTestUtils.setField(redisEngine, "bucketTtlHours", 768L);
+            ReflectionTestUtils.setField(redisEngine, "windowCacheTtlSeconds", 60L);
+            engine = redisEngine;
+            deleteRankingKeys();
+        } else {
+            engine = new MemoryRankingEngine();
+        }
+        
+        // 通过全量重建写入初始数据，与线上重建路径相同
+        RankingEngine.RebuildTarget target = engine.beginRebuild("benchmark");
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        List<PostRepository.UserPostStats> chunk = new ArrayList<>();
+        for (long userId = 1; userId <= userCount; userId++) {
+            chunk.add(new Stats(userId, random.nextInt(100), random.nextInt(5000), random.nextInt(2000)));
+            if (chunk.size() == 1000) {
+                target.write(chunk);
+                chunk = new ArrayList<>();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            target.write(chunk);
+        }
+        target.commit(null);
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (connectionFactory != null) {
+            deleteRankingKeys();
+            connectionFactory.destroy();
+        }
+    }
+    
+    @Benchmark
+    public Long rank() {
+        return engine.rank("composite_score", randomUserId());
+    }
+    
+    @Benchmark
+    public List<RankingService.RankingEntry> topPage() {
+        return engine.range("composite_score", 0, 9);
+    }
+    
+    @Benchmark
+    public Map<String, Object> around() {
+        return engine.around(randomUserId(), "composite_score", 5);
+    }
+    
+    @Benchmark
+    public long applyDeltas() {
+        LocalDateTime hour = LocalDateTime.now().truncatedTo(ChronoUnit.HOURS);
+        return engine.applyDeltas(randomUserId(), 0, 1, 0, Collections.singletonMap(hour, new long[]{0, 1, 0}));
+    }
+    
+    private long randomUserId() {
+        return ThreadLocalRandom.current().nextLong(1, userCount + 1);
+    }
+    
+    private void deleteRankingKeys() {
+        Set<String> keys = stringRedisTemplate.keys("ranking:*");
+        if (keys != null && !keys.isEmpty()) {
+            stringRedisTemplate.delete(keys);
+        }
+    }
+    
+    private static class Stats implements PostRepository.UserPostStats {
+        
+        private final Long userId;
+        private final Long postCount;
+        private final Long totalLikes;
+        private final Long totalComments;
+        
+        Stats(long userId, long postCount, long totalLikes, long totalComments) {
+            this.userId = userId;
+            this.postCount = postCount;
+            this.totalLikes = totalLikes;
+            this.totalComments = totalComments;
+        }
+        
+        @Override
+        public Long getUserId() {
+            return userId;
+        }
+        
+        @Override
+        public Long getPostCount() {
+            return postCount;
+        }
+        
+        @Override
+        public Long getTotalLikes() {
+            return totalLikes;
+        }
+        
+        @Override
+        public Long getTotalComments() {
+            return totalComments;
+        }
+    }
+} 
\ No newline at end of file
@@ -0,0 +1,102 @@
+package com.social.benchmark;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.PropertyAccessor;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.jsontype.impl.LaissezFaireSubTypeValidator;
+import com.social.config.RankingMemberSerializer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 排行榜成员编码基准测试：RankingMemberSerializer（十进制ASCII）与原先使用的Jackson2JsonRedisSerializer
+ * 旧方式按 userId.toString() 经Jackson写入，读取时先反序列化为字符串再解析为用户ID
+ * 编码后每个成员的平均字节数在每轮测试开始时输出
+ * 运行：mvn -Pjmh test-compile exec:exec -Djmh.args="RankingMemberCodecBenchmark"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RankingMemberCodecBenchmark {
+    
+    private static final int SAMPLE_SIZE = 1024;
+    
+    // 用户ID的量级
+    @Param({"1000000", "1000000000"})
+    private long maxUserId;
+    
+    private final long[] userIds = new long[SAMPLE_SIZE];
+    private final byte[][] decimalMembers = new byte[SAMPLE_SIZE][];
+    private final byte[][] jacksonMembers = new byte[SAMPLE_SIZE][];
+    private Jackson2JsonRedisSerializer<Object> jacksonSerializer;
+    private int index;
+    
+    @Setup(Level.Trial)
+    public void setUp() {
+        // 与RedisConfig中redisTemplate的值序列化方式一致
+        jacksonSerializer = new Jackson2JsonRedisSerializer<>(Object.class);
+        ObjectMapper mapper = new ObjectMapper();
+        mapper.setVisibility(PropertyAccessor.ALL, JsonAutoDetect.Visibility.ANY);
+        mapper.activateDefaultTyping(LaissezFaireSubTypeValidator.instance, ObjectMapper.DefaultTyping.NON_FINAL);
+        jacksonSerializer.setObjectMapper(mapper);
+        
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < SAMPLE_SIZE; i++) {
+            userIds[i] = random.nextLong(1, maxUserId + 1);
+            decimalMembers[i] = RankingMemberSerializer.INSTANCE.serialize(userIds[i]);
+            jacksonMembers[i] = jacksonSerializer.serialize(Long.toString(userIds[i]));
+        }
+        System.out.printf("每个成员平均字节数: RankingMemberSerializer=%.2f, Jackson2JsonRedisSerializer=%.2f%n",
+            averageLength(decimalMembers), averageLength(jacksonMembers));
+    }
+    
+    @Benchmark
+    public byte[] encodeDecimal() {
+        return RankingMemberSerializer.INSTANCE.serialize(userIds[next()]);
+    }
+    
+    @Benchmark
+    public byte[] encodeJackson() {
+        return jacksonSerializer.serialize(Long.toString(userIds[next()]));
+    }
+    
+    @Benchmark
+    public Long decodeDecimal() {
+        return RankingMemberSerializer.INSTANCE.deserialize(decimalMembers[next()]);
+    }
+    
+    @Benchmark
+    public long decodeJackson() {
+        return Long.parseLong((String) jacksonSerializer.deserialize(jacksonMembers[next()]));
+    }
+    
+    private static double averageLength(byte[][] members) {
+        long total = 0;
+        for (byte[] member : members) {
+            total += member.length;
+        }
+        return (double) total / members.length;
+    }
+    
+    private int next() {
+        index = (index + 1) & (SAMPLE_SIZE - 1);
+        return index;
+    }
+} 
\ No newline at end of file
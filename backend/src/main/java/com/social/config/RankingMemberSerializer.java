@@ -0,0 +1,63 @@
+package com.social.config;
+
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 排行榜有序集合成员（用户ID）的序列化方式：十进制ASCII，例如用户12编码为 12
+ * 相比Jackson序列化（"12"）更短，解码不经过Jackson，Lua脚本和redis-cli中可直接读取
+ * 兼容旧格式：解码时会去掉Jackson写入的双引号，便于迁移期间读取旧成员
+ */
+public class RankingMemberSerializer implements RedisSerializer<Long> {
+    
+    public static final RankingMemberSerializer INSTANCE = new RankingMemberSerializer();
+    
+    @Override
+    public byte[] serialize(Long value) throws SerializationException {
+        if (value == null) {
+            return null;
+        }
+        return Long.toString(value).getBytes(StandardCharsets.US_ASCII);
+    }
+    
+    @Override
+    public Long deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null) {
+            return null;
+        }
+        int from = 0;
+        int to = bytes.length;
+        // 旧格式带双引号
+        if (to >= 2 && bytes[0] == '"' && bytes[to - 1] == '"') {
+            from++;
+            to--;
+        }
+        if (from == to) {
+            throw new SerializationException("排行榜成员为空");
+        }
+        boolean negative = bytes[from] == '-';
+        long value = 0;
+        for (int i = negative ? from + 1 : from; i < to; i++) {
+            int digit = bytes[i] - '0';
+            if (digit < 0 || digit > 9) {
+                throw new SerializationException("无法解析排行榜成员: " + new String(bytes, StandardCharsets.UTF_8));
+            }
+            value = value * 10 + digit;
+        }
+        return negative ? -value : value;
+    }
+    
+    /**
+     * 解码Lua脚本以字符串形式返回的成员
+     */
+    public static long decode(String member) {
+        return INSTANCE.deserialize(member.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    @Override
+    public Class<?> getTargetType() {
+        return Long.class;
+    }
+} 
\ No newline at end of file
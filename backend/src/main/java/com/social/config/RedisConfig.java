@@ -8,6 +8,7 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.GenericToStringSerializer;
 import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
@@ -40,4 +41,32 @@ public class RedisConfig {
         
         return template;
     }
+    
+    /**
+     * 排行榜专用模板：key为字符串，有序集合成员为十进制用户ID（见RankingMemberSerializer）
+     */
+    @Bean
+    public RedisTemplate<String, Long> rankingRedisTemplate(RedisConnectionFactory factory) {
+        RedisTemplate<String, Long> template = new RedisTemplate<>();
+        template.setConnectionFactory(factory);
+        template.setKeySerializer(new StringRedisSerializer());
+        template.setValueSerializer(RankingMemberSerializer.INSTANCE);
+        template.afterPropertiesSet();
+        
+        return template;
+    }
+    
+    /**
+     * ID集合专用模板（点赞集合、热门动态、时间线等）：key为字符串，值为十进制Long，不依赖排行榜的成员编码
+     */
+    @Bean
+    public RedisTemplate<String, Long> longRedisTemplate(RedisConnectionFactory factory) {
+        RedisTemplate<String, Long> template = new RedisTemplate<>();
+        template.setConnectionFactory(factory);
+        template.setKeySerializer(new StringRedisSerializer());
+        template.setValueSerializer(new GenericToStringSerializer<>(Long.class));
+        template.afterPropertiesSet();
+        
+        return template;
+    }
 } 
\ No newline at end of file
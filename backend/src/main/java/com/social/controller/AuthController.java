@@ -2,6 +2,7 @@ package com.social.controller;
 
 import com.social.entity.User;
 import com.social.repository.UserRepository;
+import com.social.service.UserSummaryService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -15,6 +16,7 @@ import java.util.Map;
 public class AuthController {
     
     private final UserRepository userRepository;
+    private final UserSummaryService userSummaryService;
     
     /**
      * 用户登录
@@ -71,6 +73,7 @@ public class AuthController {
         newUser.setPostCount(0);
         
         User savedUser = userRepository.save(newUser);
+        userSummaryService.invalidate(savedUser.getId());
         
         Map<String, Object> response = new HashMap<>();
         response.put("token", "mock-token-" + savedUser.getId());
@@ -2,13 +2,13 @@ package com.social.controller;
 
 import com.social.entity.Comment;
 import com.social.service.CommentService;
+import com.social.util.CursorPage;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 
 @RestController
@@ -124,11 +124,12 @@ public class CommentController {
                 throw new RuntimeException("用户ID不能为空");
             }
             
-            commentService.deleteComment(postId, commentId, finalUserId);
+            int deletedCount = commentService.deleteComment(postId, commentId, finalUserId);
             
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
             response.put("message", "评论删除成功");
+            response.put("deletedCount", deletedCount);
             
             return ResponseEntity.ok(response);
             
@@ -176,22 +177,26 @@ public class CommentController {
     }
     
     /**
-     * 获取评论的回复列表
-     * GET /api/posts/{postId}/comments/{commentId}/replies?userId={userId}
+     * 按游标分页获取评论的回复
+     * GET /api/posts/{postId}/comments/{commentId}/replies?userId={userId}&cursor={cursor}&size={size}
      */
     @GetMapping("/{commentId}/replies")
     public ResponseEntity<Map<String, Object>> getCommentReplies(
             @PathVariable Long postId,
             @PathVariable Long commentId,
-            @RequestParam(required = false) Long userId) {
+            @RequestParam(required = false) Long userId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
         
         try {
-            List<Comment> replies = commentService.getCommentReplies(commentId, userId);
+            CursorPage<Comment> replies = commentService.getCommentReplies(commentId, cursor, size, userId);
             
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
-            response.put("data", replies);
-            response.put("total", replies.size());
+            response.put("data", replies.getContent());
+            response.put("nextCursor", replies.getNextCursor());
+            response.put("size", size);
+            response.put("hasNext", replies.hasNext());
             
             return ResponseEntity.ok(response);
             
@@ -0,0 +1,121 @@
+package com.social.controller;
+
+import com.social.service.FollowService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Page;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/follows")
+@RequiredArgsConstructor
+public class FollowController {
+    
+    private final FollowService followService;
+    
+    /**
+     * 关注用户
+     * POST /api/follows/{followingId}
+     */
+    @PostMapping("/{followingId}")
+    public ResponseEntity<Map<String, Object>> follow(
+            @PathVariable Long followingId,
+            @RequestBody Map<String, Long> followData) {
+        
+        try {
+            Long userId = followData.get("userId");
+            boolean created = followService.follow(userId, followingId);
+            
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("message", created ? "关注成功" : "已关注该用户");
+            
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", false);
+            response.put("message", "关注失败: " + e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        }
+    }
+    
+    /**
+     * 取消关注
+     * DELETE /api/follows/{followingId}
+     */
+    @DeleteMapping("/{followingId}")
+    public ResponseEntity<Map<String, Object>> unfollow(
+            @PathVariable Long followingId,
+            @RequestBody Map<String, Long> followData) {
+        
+        try {
+            Long userId = followData.get("userId");
+            boolean removed = followService.unfollow(userId, followingId);
+            
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("message", removed ? "取消关注成功" : "未关注该用户");
+            
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", false);
+            response.put("message", "取消关注失败: " + e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        }
+    }
+    
+    /**
+     * 是否已关注
+     */
+    @GetMapping("/{followingId}/status")
+    public ResponseEntity<Map<String, Object>> getFollowStatus(
+            @PathVariable Long followingId,
+            @RequestParam Long userId) {
+        
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("following", followService.isFollowing(userId, followingId));
+        
+        return ResponseEntity.ok(response);
+    }
+    
+    /**
+     * 获取粉丝列表
+     */
+    @GetMapping("/{userId}/followers")
+    public ResponseEntity<Map<String, Object>> getFollowers(
+            @PathVariable Long userId,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size) {
+        
+        return ResponseEntity.ok(buildPageResponse(followService.getFollowers(userId, page, size)));
+    }
+    
+    /**
+     * 获取关注列表
+     */
+    @GetMapping("/{userId}/following")
+    public ResponseEntity<Map<String, Object>> getFollowing(
+            @PathVariable Long userId,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size) {
+        
+        return ResponseEntity.ok(buildPageResponse(followService.getFollowing(userId, page, size)));
+    }
+    
+    private Map<String, Object> buildPageResponse(Page<Map<String, Object>> users) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("data", users.getContent());
+        response.put("totalElements", users.getTotalElements());
+        response.put("totalPages", users.getTotalPages());
+        response.put("currentPage", users.getNumber());
+        response.put("size", users.getSize());
+        response.put("hasNext", users.hasNext());
+        return response;
+    }
+} 
\ No newline at end of file
@@ -4,6 +4,7 @@ import com.social.entity.Message;
 import com.social.entity.User;
 import com.social.repository.MessageRepository;
 import com.social.repository.UserRepository;
+import com.social.service.UserSummaryService;
 import com.social.service.WebSocketNotificationService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
@@ -28,8 +29,12 @@ public class NotificationController {
     private final MessageRepository messageRepository;
     private final UserRepository userRepository;
     private final WebSocketNotificationService webSocketNotificationService;
+    private final UserSummaryService userSummaryService;
     private static final Logger log = LoggerFactory.getLogger(NotificationController.class);
     
+    // 发布通知时每批加载的接收者数量
+    private static final int PUBLISH_BATCH_SIZE = 500;
+    
     /**
      * 获取用户消息列表
      */
@@ -139,57 +144,11 @@ public class NotificationController {
                 // 发送给所有用户
                 List<Long> allUserIds = messageRepository.getAllUserIds();
                 log.info("发送给所有用户，用户数量: {}", allUserIds.size());
-                for (Long userId : allUserIds) {
-                    User toUser = userRepository.findById(userId).orElse(null);
-                    if (toUser != null) {
-                        Message message = new Message();
-                        message.setFromUser(systemUser);
-                        message.setToUser(toUser);
-                        message.setType(Message.MessageType.valueOf(type));
-                        message.setTitle(title);
-                        message.setContent(content);
-                        message.setIsRead(false);
-                        message.setCreatedAt(LocalDateTime.now());
-                        Message savedMessage = messageRepository.save(message);
-                        
-                        log.info("保存通知成功，通知ID: {}, 发送给用户: {}", savedMessage.getId(), userId);
-                        
-                        // 发送WebSocket通知给在线用户
-                        try {
-                            webSocketNotificationService.sendNotificationToUser(userId, savedMessage, systemUser);
-                            log.info("WebSocket通知发送成功，用户ID: {}", userId);
-                        } catch (Exception e) {
-                            log.error("WebSocket通知发送失败，用户ID: {}", userId, e);
-                        }
-                    }
-                }
+                publishToUsers(allUserIds, systemUser, Message.MessageType.valueOf(type), title, content);
             } else if ("SPECIFIC".equals(targetType) && targetUserIds != null) {
                 // 发送给指定用户
                 log.info("发送给指定用户，用户数量: {}", targetUserIds.size());
-                for (Long userId : targetUserIds) {
-                    User toUser = userRepository.findById(userId).orElse(null);
-                    if (toUser != null) {
-                        Message message = new Message();
-                        message.setFromUser(systemUser);
-                        message.setToUser(toUser);
-                        message.setType(Message.MessageType.valueOf(type));
-                        message.setTitle(title);
-                        message.setContent(content);
-                        message.setIsRead(false);
-                        message.setCreatedAt(LocalDateTime.now());
-                        Message savedMessage = messageRepository.save(message);
-                        
-                        log.info("保存通知成功，通知ID: {}, 发送给用户: {}", savedMessage.getId(), userId);
-                        
-                        // 发送WebSocket通知给在线用户
-                        try {
-                            webSocketNotificationService.sendNotificationToUser(userId, savedMessage, systemUser);
-                            log.info("WebSocket通知发送成功，用户ID: {}", userId);
-                        } catch (Exception e) {
-                            log.error("WebSocket通知发送失败，用户ID: {}", userId, e);
-                        }
-                    }
-                }
+                publishToUsers(targetUserIds, systemUser, Message.MessageType.valueOf(type), title, content);
             }
             
             Map<String, Object> response = new HashMap<>();
@@ -204,6 +163,41 @@ public class NotificationController {
         }
     }
     
+    /**
+     * 逐个用户保存通知并推送，接收者按批一次查询加载
+     */
+    private void publishToUsers(List<Long> userIds, User systemUser, Message.MessageType type,
+                                String title, String content) {
+        for (int from = 0; from < userIds.size(); from += PUBLISH_BATCH_SIZE) {
+            List<Long> batch = userIds.subList(from, Math.min(from + PUBLISH_BATCH_SIZE, userIds.size()));
+            Map<Long, User> users = userSummaryService.getUsers(batch);
+            for (Long userId : batch) {
+                User toUser = users.get(userId);
+                if (toUser != null) {
+                    Message message = new Message();
+                    message.setFromUser(systemUser);
+                    message.setToUser(toUser);
+                    message.setType(type);
+                    message.setTitle(title);
+                    message.setContent(content);
+                    message.setIsRead(false);
+                    message.setCreatedAt(LocalDateTime.now());
+                    Message savedMessage = messageRepository.save(message);
+                    
+                    log.info("保存通知成功，通知ID: {}, 发送给用户: {}", savedMessage.getId(), userId);
+                    
+                    // 发送WebSocket通知给在线用户
+                    try {
+                        webSocketNotificationService.sendNotificationToUser(userId, savedMessage, systemUser);
+                        log.info("WebSocket通知发送成功，用户ID: {}", userId);
+                    } catch (Exception e) {
+                        log.error("WebSocket通知发送失败，用户ID: {}", userId, e);
+                    }
+                }
+            }
+        }
+    }
+    
     /**
      * 获取管理员通知列表
      */
@@ -4,7 +4,11 @@ import com.social.entity.Post;
 import com.social.entity.User;
 import com.social.repository.PostRepository;
 import com.social.repository.UserRepository;
+import com.social.service.LikedPostService;
+import com.social.service.PostCounterBuffer;
+import com.social.service.PostDetailCache;
 import com.social.service.PostService;
+import com.social.util.CursorPage;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
@@ -13,6 +17,7 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -27,6 +32,15 @@ public class PostController {
     @Autowired
     private PostService postService;
     
+    @Autowired
+    private LikedPostService likedPostService;
+    
+    @Autowired
+    private PostCounterBuffer postCounterBuffer;
+    
+    @Autowired
+    private PostDetailCache postDetailCache;
+    
     /**
      * 发布动态
      */
@@ -82,14 +96,77 @@ public class PostController {
     
     /**
      * 获取动态列表
+     * 传入cursor参数（第一页传空字符串）时使用游标分页，返回nextCursor且不统计总数
      */
     @GetMapping
     public ResponseEntity<Map<String, Object>> getPosts(
             @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "20") int size) {
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Long currentUserId) {
         
         try {
+            if (cursor != null) {
+                CursorPage<Post> posts = postService.getPostsByCursor(cursor, size);
+                likedPostService.fillLikedState(posts.getContent(), currentUserId);
+                return ResponseEntity.ok(buildCursorResponse(posts, size));
+            }
+            
             Page<Post> posts = postService.getPosts(page, size);
+            likedPostService.fillLikedState(posts.getContent(), currentUserId);
+            
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("data", posts.getContent());
+            response.put("totalElements", posts.getTotalElements());
+            response.put("totalPages", posts.getTotalPages());
+            response.put("currentPage", posts.getNumber());
+            response.put("size", posts.getSize());
+            response.put("hasNext", posts.hasNext());
+            response.put("hasPrevious", posts.hasPrevious());
+            
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        }
+    }
+    
+    /**
+     * 获取首页时间线（自己和关注用户的动态），使用游标分页
+     */
+    @GetMapping("/timeline")
+    public ResponseEntity<Map<String, Object>> getHomeTimeline(
+            @RequestParam Long userId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+        
+        try {
+            CursorPage<Post> posts = postService.getHomeTimeline(userId, cursor, size);
+            likedPostService.fillLikedState(posts.getContent(), userId);
+            return ResponseEntity.ok(buildCursorResponse(posts, size));
+        } catch (Exception e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        }
+    }
+    
+    /**
+     * 获取热门动态列表（按随时间衰减的热度排序）
+     */
+    @GetMapping("/hot")
+    public ResponseEntity<Map<String, Object>> getHotPosts(
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(required = false) Long currentUserId) {
+        
+        try {
+            Page<Post> posts = postService.getHotPosts(page, size);
+            likedPostService.fillLikedState(posts.getContent(), currentUserId);
             
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
@@ -112,15 +189,25 @@ public class PostController {
     
     /**
      * 获取用户的动态列表
+     * 传入cursor参数（第一页传空字符串）时使用游标分页
      */
     @GetMapping("/user/{userId}")
     public ResponseEntity<Map<String, Object>> getUserPosts(
             @PathVariable Long userId,
             @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "20") int size) {
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Long currentUserId) {
         
         try {
+            if (cursor != null) {
+                CursorPage<Post> posts = postService.getUserPostsByCursor(userId, cursor, size);
+                likedPostService.fillLikedState(posts.getContent(), currentUserId);
+                return ResponseEntity.ok(buildCursorResponse(posts, size));
+            }
+            
             Page<Post> posts = postService.getUserPosts(userId, page, size);
+            likedPostService.fillLikedState(posts.getContent(), currentUserId);
             
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
@@ -141,13 +228,38 @@ public class PostController {
         }
     }
     
+    /**
+     * 获取动态计数写缓冲统计
+     */
+    @GetMapping("/counters/stats")
+    public ResponseEntity<Map<String, Object>> getCounterStats() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("stats", postCounterBuffer.getStats());
+        
+        return ResponseEntity.ok(response);
+    }
+    
+    /**
+     * 获取动态详情缓存统计（本节点）
+     */
+    @GetMapping("/detail-cache/stats")
+    public ResponseEntity<Map<String, Object>> getDetailCacheStats() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("stats", postDetailCache.getCacheStats());
+        
+        return ResponseEntity.ok(response);
+    }
+    
     /**
      * 获取单个动态详情
      */
     @GetMapping("/{postId}")
-    public ResponseEntity<Map<String, Object>> getPost(@PathVariable Long postId) {
+    public ResponseEntity<Map<String, Object>> getPost(
+            @PathVariable Long postId,
+            @RequestParam(required = false) Long currentUserId) {
         try {
             Post post = postService.getPost(postId);
+            likedPostService.fillLikedState(Collections.singletonList(post), currentUserId);
             
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
@@ -183,11 +295,11 @@ public class PostController {
             }
             
             // 使用PostService处理点赞
-            postService.likePost(postId, userId);
+            boolean liked = postService.likePost(postId, userId);
             
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
-            response.put("message", "点赞成功");
+            response.put("message", liked ? "点赞成功" : "已点赞");
             
             return ResponseEntity.ok(response);
         } catch (Exception e) {
@@ -219,11 +331,11 @@ public class PostController {
             }
             
             // 使用PostService处理取消点赞
-            postService.unlikePost(postId, userId);
+            boolean unliked = postService.unlikePost(postId, userId);
             
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
-            response.put("message", "取消点赞成功");
+            response.put("message", unliked ? "取消点赞成功" : "未点赞");
             
             return ResponseEntity.ok(response);
         } catch (Exception e) {
@@ -233,4 +345,14 @@ public class PostController {
             return ResponseEntity.badRequest().body(response);
         }
     }
+    
+    private Map<String, Object> buildCursorResponse(CursorPage<Post> posts, int size) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("data", posts.getContent());
+        response.put("nextCursor", posts.getNextCursor());
+        response.put("size", size);
+        response.put("hasNext", posts.hasNext());
+        return response;
+    }
 } 
\ No newline at end of file
@@ -2,16 +2,20 @@ package com.social.controller;
 
 import com.social.entity.User;
 import com.social.repository.UserRepository;
-import com.social.repository.PostRepository;
+import com.social.service.RankingLeaderElection;
+import com.social.service.RankingPageCache;
+import com.social.service.RankingRebuildService;
 import com.social.service.RankingService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.Optional;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @RestController
@@ -20,8 +24,11 @@ import java.util.stream.Collectors;
 public class RankingController {
     
     private final RankingService rankingService;
+    private final RankingRebuildService rankingRebuildService;
+    // 仅Redis排行榜引擎需要选主
+    private final Optional<RankingLeaderElection> rankingLeaderElection;
+    private final RankingPageCache rankingPageCache;
     private final UserRepository userRepository;
-    private final PostRepository postRepository;
     
     /**
      * 获取动态数排行榜
@@ -31,14 +38,7 @@ public class RankingController {
             @RequestParam(defaultValue = "0") int start,
             @RequestParam(defaultValue = "9") int end) {
         
-        Set<Object> userIds = rankingService.getPostCountRanking(start, end);
-        List<User> users = userRepository.findAllById(
-            userIds.stream().map(id -> Long.valueOf(id.toString())).collect(Collectors.toList())
-        );
-        
-        Map<String, Object> response = new HashMap<>();
-        response.put("users", users);
-        response.put("total", rankingService.getPostCountRanking(0, -1).size());
+        Map<String, Object> response = buildRankingResponse("post_count", start, end);
         response.put("type", "post_count");
         
         return ResponseEntity.ok(response);
@@ -52,14 +52,7 @@ public class RankingController {
             @RequestParam(defaultValue = "0") int start,
             @RequestParam(defaultValue = "9") int end) {
         
-        Set<Object> userIds = rankingService.getPostLikesRanking(start, end);
-        List<User> users = userRepository.findAllById(
-            userIds.stream().map(id -> Long.valueOf(id.toString())).collect(Collectors.toList())
-        );
-        
-        Map<String, Object> response = new HashMap<>();
-        response.put("users", users);
-        response.put("total", rankingService.getPostLikesRanking(0, -1).size());
+        Map<String, Object> response = buildRankingResponse("post_likes", start, end);
         response.put("type", "post_likes");
         
         return ResponseEntity.ok(response);
@@ -73,14 +66,7 @@ public class RankingController {
             @RequestParam(defaultValue = "0") int start,
             @RequestParam(defaultValue = "9") int end) {
         
-        Set<Object> userIds = rankingService.getPostCommentsRanking(start, end);
-        List<User> users = userRepository.findAllById(
-            userIds.stream().map(id -> Long.valueOf(id.toString())).collect(Collectors.toList())
-        );
-        
-        Map<String, Object> response = new HashMap<>();
-        response.put("users", users);
-        response.put("total", rankingService.getPostCommentsRanking(0, -1).size());
+        Map<String, Object> response = buildRankingResponse("post_comments", start, end);
         response.put("type", "post_comments");
         
         return ResponseEntity.ok(response);
@@ -94,49 +80,45 @@ public class RankingController {
             @RequestParam(defaultValue = "0") int start,
             @RequestParam(defaultValue = "9") int end) {
         
-        // 获取用户ID和对应的综合评分
-        Map<String, Double> userScores = rankingService.getCompositeScoreRankingWithScores(start, end);
-        
-        // 获取用户详细信息
-        List<Long> userIds = userScores.keySet().stream()
-            .map(Long::valueOf)
-            .collect(Collectors.toList());
-        List<User> users = userRepository.findAllById(userIds);
-        
-        // 构建包含用户信息和分数的响应数据
-        List<Map<String, Object>> userRankingData = users.stream()
-            .map(user -> {
-                Map<String, Object> userData = new HashMap<>();
-                userData.put("user", user);
-                userData.put("compositeScore", userScores.get(user.getId().toString()));
-                
-                // 计算各项指标
-                long postCount = postRepository.countByUserId(user.getId());
-                long totalLikes = postRepository.findByUserIdOrderByCreatedAtDesc(user.getId())
-                    .stream()
-                    .mapToLong(post -> post.getLikeCount() != null ? post.getLikeCount() : 0)
-                    .sum();
-                long totalComments = postRepository.findByUserIdOrderByCreatedAtDesc(user.getId())
-                    .stream()
-                    .mapToLong(post -> post.getCommentCount() != null ? post.getCommentCount() : 0)
-                    .sum();
-                
-                userData.put("postCount", postCount);
-                userData.put("totalLikes", totalLikes);
-                userData.put("totalComments", totalComments);
-                
-                return userData;
-            })
-            .collect(Collectors.toList());
-        
-        Map<String, Object> response = new HashMap<>();
-        response.put("userRankings", userRankingData);
-        response.put("total", rankingService.getCompositeScoreRanking(0, -1).size());
+        // 从版本化的页面缓存读取，缓存中已包含用户信息和各项指标
+        Map<String, Object> response = rankingPageCache.getCompositeScorePage(start, end);
         response.put("type", "composite_score");
         
         return ResponseEntity.ok(response);
     }
     
+    /**
+     * 获取时间窗口排行榜（day/week/month），由小时分桶合并而成
+     */
+    @GetMapping("/window/{window}")
+    public ResponseEntity<Map<String, Object>> getWindowRanking(
+            @PathVariable String window,
+            @RequestParam(defaultValue = "composite_score") String type,
+            @RequestParam(defaultValue = "0") int start,
+            @RequestParam(defaultValue = "9") int end) {
+        if (!RankingService.isSupportedWindow(window)) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("message", "不支持的时间窗口: " + window);
+            
+            return ResponseEntity.badRequest().body(response);
+        }
+        
+        try {
+            Map<String, Object> response = buildRankingResponse(
+                rankingService.getWindowRankingEntries(window, type, start, end),
+                rankingService.getWindowRankingSize(window, type));
+            response.put("window", window);
+            response.put("type", type);
+            
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("message", "获取时间窗口排行榜失败: " + e.getMessage());
+            
+            return ResponseEntity.badRequest().body(response);
+        }
+    }
+    
     /**
      * 获取用户排名
      */
@@ -170,17 +152,40 @@ public class RankingController {
     }
     
     /**
-     * 手动更新排行榜
+     * 获取用户周边排名：全部排行榜上的排名和分数，以及指定排行榜上前后k名的用户
+     */
+    @GetMapping("/user/{userId}/around")
+    public ResponseEntity<Map<String, Object>> getUserAround(
+            @PathVariable Long userId,
+            @RequestParam(defaultValue = "composite_score") String type,
+            @RequestParam(defaultValue = "5") int k) {
+        try {
+            Map<String, Object> response = rankingService.getUserAround(userId, type, k);
+            response.put("userId", userId);
+            response.put("type", type);
+            
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("message", "获取用户周边排名失败: " + e.getMessage());
+            
+            return ResponseEntity.badRequest().body(response);
+        }
+    }
+    
+    /**
+     * 手动更新排行榜（后台执行，通过 /update/status 查询进度）
      */
     @PostMapping("/update")
     public ResponseEntity<Map<String, Object>> updateRankings() {
         try {
-            rankingService.manualUpdateRankings();
+            RankingRebuildService.RebuildJob job = rankingRebuildService.submitRebuild();
             
             Map<String, Object> response = new HashMap<>();
-            response.put("message", "排行榜更新成功");
+            response.put("message", "排行榜更新任务已提交");
+            response.put("job", job.toMap());
             
-            return ResponseEntity.ok(response);
+            return ResponseEntity.accepted().body(response);
         } catch (Exception e) {
             Map<String, Object> response = new HashMap<>();
             response.put("message", "排行榜更新失败: " + e.getMessage());
@@ -189,16 +194,48 @@ public class RankingController {
         }
     }
     
+    /**
+     * 查询排行榜更新任务进度
+     */
+    @GetMapping("/update/status")
+    public ResponseEntity<Map<String, Object>> getUpdateStatus() {
+        RankingRebuildService.RebuildJob job = rankingRebuildService.getCurrentJob();
+        
+        Map<String, Object> response = new HashMap<>();
+        response.put("job", job != null ? job.toMap() : null);
+        
+        return ResponseEntity.ok(response);
+    }
+    
+    /**
+     * 查询排行榜增量队列的深度和合并比例
+     */
+    @GetMapping("/update/queue")
+    public ResponseEntity<Map<String, Object>> getUpdateQueue() {
+        return ResponseEntity.ok(rankingService.getDeltaQueueStats());
+    }
+    
+    /**
+     * 查询定时重建租约的持有情况（多实例部署时只有持有者执行定时重建）
+     */
+    @GetMapping("/update/lease")
+    public ResponseEntity<Map<String, Object>> getUpdateLease() {
+        return rankingLeaderElection
+            .map(election -> ResponseEntity.ok(election.getStatus()))
+            .orElseGet(() -> {
+                Map<String, Object> response = new HashMap<>();
+                response.put("message", "当前排行榜引擎不需要选主，各节点分别重建");
+                return ResponseEntity.ok(response);
+            });
+    }
+    
     /**
      * 实时更新指定用户的排行榜数据
      */
     @PostMapping("/update/user/{userId}")
     public ResponseEntity<Map<String, Object>> updateUserRanking(@PathVariable Long userId) {
         try {
-            rankingService.updateUserPostCount(userId);
-            rankingService.updateUserPostLikes(userId);
-            rankingService.updateUserPostComments(userId);
-            rankingService.updateUserCompositeScore(userId);
+            rankingService.repairUserRanking(userId);
             
             Map<String, Object> response = new HashMap<>();
             response.put("message", "用户排行榜更新成功");
@@ -223,14 +260,7 @@ public class RankingController {
             @RequestParam(defaultValue = "9") int end) {
         
         // 重定向到综合评分排行榜
-        Set<Object> userIds = rankingService.getCompositeScoreRanking(start, end);
-        List<User> users = userRepository.findAllById(
-            userIds.stream().map(id -> Long.valueOf(id.toString())).collect(Collectors.toList())
-        );
-        
-        Map<String, Object> response = new HashMap<>();
-        response.put("users", users);
-        response.put("total", rankingService.getCompositeScoreRanking(0, -1).size());
+        Map<String, Object> response = buildRankingResponse("composite_score", start, end);
         response.put("type", "score");
         response.put("note", "此接口已重定向到综合评分排行榜");
         
@@ -246,14 +276,7 @@ public class RankingController {
             @RequestParam(defaultValue = "9") int end) {
         
         // 重定向到动态点赞数排行榜
-        Set<Object> userIds = rankingService.getPostLikesRanking(start, end);
-        List<User> users = userRepository.findAllById(
-            userIds.stream().map(id -> Long.valueOf(id.toString())).collect(Collectors.toList())
-        );
-        
-        Map<String, Object> response = new HashMap<>();
-        response.put("users", users);
-        response.put("total", rankingService.getPostLikesRanking(0, -1).size());
+        Map<String, Object> response = buildRankingResponse("post_likes", start, end);
         response.put("type", "followers");
         response.put("note", "此接口已重定向到动态点赞数排行榜");
         
@@ -269,17 +292,52 @@ public class RankingController {
             @RequestParam(defaultValue = "9") int end) {
         
         // 重定向到动态数排行榜
-        Set<Object> userIds = rankingService.getPostCountRanking(start, end);
-        List<User> users = userRepository.findAllById(
-            userIds.stream().map(id -> Long.valueOf(id.toString())).collect(Collectors.toList())
-        );
-        
-        Map<String, Object> response = new HashMap<>();
-        response.put("users", users);
-        response.put("total", rankingService.getPostCountRanking(0, -1).size());
+        Map<String, Object> response = buildRankingResponse("post_count", start, end);
         response.put("type", "posts");
         response.put("note", "此接口已重定向到动态数排行榜");
         
         return ResponseEntity.ok(response);
     }
+    
+    /**
+     * 构建排行榜响应：按排名顺序返回用户及其排名和分数，总人数通过ZCARD获取
+     */
+    private Map<String, Object> buildRankingResponse(String rankingType, int start, int end) {
+        return buildRankingResponse(rankingService.getRankingEntries(rankingType, start, end),
+            rankingService.getRankingSize(rankingType));
+    }
+    
+    private Map<String, Object> buildRankingResponse(List<RankingService.RankingEntry> entries, long total) {
+        Map<Long, User> usersById = findUsersById(entries);
+        
+        List<User> users = new ArrayList<>();
+        List<Map<String, Object>> rankings = new ArrayList<>();
+        for (RankingService.RankingEntry entry : entries) {
+            User user = usersById.get(entry.getUserId());
+            if (user == null) {
+                continue;
+            }
+            users.add(user);
+            
+            Map<String, Object> ranking = new HashMap<>();
+            ranking.put("rank", entry.getRank());
+            ranking.put("score", entry.getScore());
+            ranking.put("user", user);
+            rankings.add(ranking);
+        }
+        
+        Map<String, Object> response = new HashMap<>();
+        response.put("users", users);
+        response.put("rankings", rankings);
+        response.put("total", total);
+        return response;
+    }
+    
+    private Map<Long, User> findUsersById(List<RankingService.RankingEntry> entries) {
+        List<Long> userIds = entries.stream()
+            .map(RankingService.RankingEntry::getUserId)
+            .collect(Collectors.toList());
+        return userRepository.findAllById(userIds).stream()
+            .collect(Collectors.toMap(User::getId, Function.identity()));
+    }
 } 
\ No newline at end of file
@@ -2,6 +2,7 @@ package com.social.controller;
 
 import com.social.entity.User;
 import com.social.repository.UserRepository;
+import com.social.service.UserSummaryService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -16,6 +17,7 @@ import java.util.Map;
 public class UserController {
     
     private final UserRepository userRepository;
+    private final UserSummaryService userSummaryService;
     
     /**
      * 获取用户信息
@@ -49,6 +51,17 @@ public class UserController {
         return ResponseEntity.ok(response);
     }
     
+    /**
+     * 获取用户摘要缓存统计
+     */
+    @GetMapping("/summary-cache/stats")
+    public ResponseEntity<Map<String, Object>> getSummaryCacheStats() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("stats", userSummaryService.getCacheStats());
+        
+        return ResponseEntity.ok(response);
+    }
+    
     /**
      * 更新用户信息
      */
@@ -80,6 +93,7 @@ public class UserController {
             }
             
             User updatedUser = userRepository.save(user);
+            userSummaryService.invalidate(userId);
             
             Map<String, Object> response = new HashMap<>();
             response.put("message", "用户信息更新成功");
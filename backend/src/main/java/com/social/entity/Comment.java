@@ -10,7 +10,10 @@ import java.util.Map;
 
 @Data
 @Entity
-@Table(name = "comments")
+@Table(name = "comments", indexes = {
+    // 按父评论截取前几条回复及回复的游标分页
+    @Index(name = "idx_parent_created_at", columnList = "parent_id, created_at")
+})
 public class Comment {
     
     @Id
@@ -29,6 +32,7 @@ public class Comment {
     @Column(name = "parent_id")
     private Long parentId;
     
+    // 点赞数量，点赞、取消点赞时原子更新，由 CommentCounterReconciler 定期校正
     @Column(name = "like_count")
     private Integer likeCount = 0;
     
@@ -44,8 +48,8 @@ public class Comment {
     @Transient
     private List<Comment> replies;
     
-    // 临时字段，用于API响应时包含回复数量
-    @Transient
+    // 直接回复数量，发表、删除回复时原子更新，由 CommentCounterReconciler 定期校正
+    @Column(name = "reply_count", columnDefinition = "int default 0")
     private Integer replyCount = 0;
     
     // 临时字段，用于API响应时标记当前用户是否已点赞
@@ -8,7 +8,12 @@ import java.time.LocalDateTime;
 
 @Data
 @Entity
-@Table(name = "comment_likes")
+@Table(name = "comment_likes", uniqueConstraints = {
+    @UniqueConstraint(name = "unique_comment_like", columnNames = {"user_id", "comment_id"})
+}, indexes = {
+    // 按评论统计点赞数
+    @Index(name = "idx_comment_id", columnList = "comment_id")
+})
 public class CommentLike {
     
     @Id
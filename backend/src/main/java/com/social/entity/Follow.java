@@ -0,0 +1,33 @@
+package com.social.entity;
+
+import lombok.Data;
+import org.hibernate.annotations.CreationTimestamp;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+@Data
+@Entity
+@Table(name = "follows", uniqueConstraints = {
+    @UniqueConstraint(name = "unique_follow", columnNames = {"follower_id", "following_id"})
+}, indexes = {
+    @Index(name = "idx_following_id", columnList = "following_id")
+})
+public class Follow {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    // 关注者
+    @Column(name = "follower_id", nullable = false)
+    private Long followerId;
+    
+    // 被关注者
+    @Column(name = "following_id", nullable = false)
+    private Long followingId;
+    
+    @CreationTimestamp
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+} 
\ No newline at end of file
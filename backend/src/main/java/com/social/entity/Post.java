@@ -10,7 +10,10 @@ import java.util.Map;
 
 @Data
 @Entity
-@Table(name = "posts")
+@Table(name = "posts", indexes = {
+    // 用户动态按时间倒序的游标分页
+    @Index(name = "idx_user_created_at", columnList = "user_id, created_at")
+})
 public class Post {
     
     @Id
@@ -46,4 +49,8 @@ public class Post {
     // 临时字段，用于API响应时包含用户信息
     @Transient
     private Map<String, Object> userInfo;
+    
+    // 临时字段，当前用户是否已点赞（请求未指定当前用户时为空）
+    @Transient
+    private Boolean isLiked;
 } 
\ No newline at end of file
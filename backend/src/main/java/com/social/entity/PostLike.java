@@ -0,0 +1,31 @@
+package com.social.entity;
+
+import lombok.Data;
+import org.hibernate.annotations.CreationTimestamp;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+@Data
+@Entity
+@Table(name = "likes", uniqueConstraints = {
+    @UniqueConstraint(name = "unique_like", columnNames = {"user_id", "post_id"})
+}, indexes = {
+    @Index(name = "idx_post_id", columnList = "post_id")
+})
+public class PostLike {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+    
+    @Column(name = "post_id", nullable = false)
+    private Long postId;
+    
+    @CreationTimestamp
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+} 
\ No newline at end of file
@@ -7,6 +7,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -23,16 +24,24 @@ public interface CommentLikeRepository extends JpaRepository<CommentLike, Long>
     @Query("SELECT COUNT(cl) FROM CommentLike cl WHERE cl.commentId = :commentId")
     Long countByCommentId(@Param("commentId") Long commentId);
     
+    // 查询用户在指定评论中点赞过的评论ID
+    @Query("SELECT cl.commentId FROM CommentLike cl WHERE cl.userId = :userId AND cl.commentId IN :commentIds")
+    List<Long> findLikedCommentIds(@Param("userId") Long userId, @Param("commentIds") Collection<Long> commentIds);
+    
+    // 查询用户点赞过的所有评论ID
+    @Query("SELECT cl.commentId FROM CommentLike cl WHERE cl.userId = :userId")
+    List<Long> findCommentIdsByUserId(@Param("userId") Long userId);
+    
     // 根据用户ID查询用户点赞的所有评论
     List<CommentLike> findByUserId(Long userId);
     
     // 根据评论ID查询所有点赞记录
     List<CommentLike> findByCommentId(Long commentId);
     
-    // 删除用户对某评论的点赞
+    // 删除用户对某评论的点赞，返回删除的行数
     @Modifying
     @Query("DELETE FROM CommentLike cl WHERE cl.userId = :userId AND cl.commentId = :commentId")
-    void deleteByUserIdAndCommentId(@Param("userId") Long userId, @Param("commentId") Long commentId);
+    int deleteByUserIdAndCommentId(@Param("userId") Long userId, @Param("commentId") Long commentId);
     
     // 删除评论的所有点赞记录
     @Modifying
@@ -6,10 +6,17 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
 
 @Repository
 public interface CommentRepository extends JpaRepository<Comment, Long> {
@@ -23,6 +30,22 @@ public interface CommentRepository extends JpaRepository<Comment, Long> {
     // 根据父评论ID查询子评论
     List<Comment> findByParentIdOrderByCreatedAtAsc(Long parentId);
     
+    // 批量查询多个父评论的前limit条子评论（按创建时间升序），在数据库中按父评论分组截取，不加载全部回复
+    @Query(value = "SELECT * FROM (SELECT c.*, ROW_NUMBER() OVER " +
+                   "(PARTITION BY c.parent_id ORDER BY c.created_at, c.id) AS row_num " +
+                   "FROM comments c WHERE c.parent_id IN (:parentIds)) ranked " +
+                   "WHERE ranked.row_num <= :limit ORDER BY ranked.parent_id, ranked.row_num", nativeQuery = true)
+    List<Comment> findTopRepliesByParentIds(@Param("parentIds") Collection<Long> parentIds, @Param("limit") int limit);
+    
+    // 子评论游标分页的第一页，按创建时间升序，使用 idx_parent_created_at 索引
+    List<Comment> findByParentIdOrderByCreatedAtAscIdAsc(Long parentId, Pageable pageable);
+    
+    // 子评论游标分页的后续页
+    @Query("SELECT c FROM Comment c WHERE c.parentId = :parentId AND c.createdAt >= :createdAt " +
+           "AND (c.createdAt > :createdAt OR c.id > :id) ORDER BY c.createdAt ASC, c.id ASC")
+    List<Comment> findByParentIdAfterCursor(@Param("parentId") Long parentId, @Param("createdAt") LocalDateTime createdAt,
+                                            @Param("id") Long id, Pageable pageable);
+    
     // 根据用户ID查询评论
     Page<Comment> findByUserIdOrderByCreatedAtDesc(Long userId, Pageable pageable);
     
@@ -30,10 +53,52 @@ public interface CommentRepository extends JpaRepository<Comment, Long> {
     @Query("SELECT COUNT(c) FROM Comment c WHERE c.postId = :postId")
     Long countByPostId(@Param("postId") Long postId);
     
+    // 按小时统计动态在since之后收到的顶级评论数，删除动态时用于扣减时间窗口排行榜
+    @Query("SELECT MIN(c.createdAt) AS firstAt, COUNT(c) AS count FROM Comment c " +
+           "WHERE c.postId = :postId AND c.parentId IS NULL AND c.createdAt >= :since " +
+           "GROUP BY YEAR(c.createdAt), MONTH(c.createdAt), DAY(c.createdAt), HOUR(c.createdAt)")
+    List<PostRepository.HourlyCount> countTopLevelByPostIdPerHour(@Param("postId") Long postId,
+                                                                  @Param("since") LocalDateTime since);
+    
     // 根据父评论ID统计回复数量
     @Query("SELECT COUNT(c) FROM Comment c WHERE c.parentId = :parentId")
     Long countByParentId(@Param("parentId") Long parentId);
     
+    // 查询仍存在的评论ID
+    @Query("SELECT c.id FROM Comment c WHERE c.id IN :commentIds")
+    List<Long> findExistingIds(@Param("commentIds") Collection<Long> commentIds);
+    
+    // 查询评论及其所有后代回复的ID（递归CTE，一条语句）
+    @Query(value = "WITH RECURSIVE subtree (id) AS (SELECT id FROM comments WHERE id = :commentId " +
+                   "UNION ALL SELECT c.id FROM comments c JOIN subtree s ON c.parent_id = s.id) " +
+                   "SELECT id FROM subtree", nativeQuery = true)
+    List<Number> findSubtreeIds(@Param("commentId") Long commentId);
+    
+    // 批量删除评论，按ID倒序先删除回复再删除父评论，parent_id外键不会阻止删除
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = "DELETE FROM comments WHERE id IN (:commentIds) ORDER BY id DESC", nativeQuery = true)
+    int deleteByIdsChildrenFirst(@Param("commentIds") Collection<Long> commentIds);
+    
+    // 原子地增减评论的回复数
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = "UPDATE comments SET reply_count = GREATEST(COALESCE(reply_count, 0) + :delta, 0) WHERE id = :commentId",
+           nativeQuery = true)
+    int incrementReplyCount(@Param("commentId") Long commentId, @Param("delta") int delta);
+    
+    // 原子地增减评论的点赞数
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = "UPDATE comments SET like_count = GREATEST(COALESCE(like_count, 0) + :delta, 0) WHERE id = :commentId",
+           nativeQuery = true)
+    int incrementLikeCount(@Param("commentId") Long commentId, @Param("delta") int delta);
+    
+    // 流式读取全部评论存储的计数和实际的回复数、点赞数，用于校正计数（MySQL驱动要求fetchSize为Integer.MIN_VALUE），调用方需在只读事务内消费并关闭Stream
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "" + Integer.MIN_VALUE))
+    @Query(value = "SELECT c.id AS commentId, c.reply_count AS replyCount, c.like_count AS likeCount, " +
+                   "(SELECT COUNT(*) FROM comments r WHERE r.parent_id = c.id) AS actualReplyCount, " +
+                   "(SELECT COUNT(*) FROM comment_likes l WHERE l.comment_id = c.id) AS actualLikeCount " +
+                   "FROM comments c ORDER BY c.id", nativeQuery = true)
+    Stream<CommentCounterStats> streamCommentCounterStats();
+    
     // 删除帖子的所有评论
     @Modifying
     @Query("DELETE FROM Comment c WHERE c.postId = :postId")
@@ -47,4 +112,19 @@ public interface CommentRepository extends JpaRepository<Comment, Long> {
     // 根据帖子ID查询所有评论ID
     @Query("SELECT c.id FROM Comment c WHERE c.postId = :postId")
     List<Long> findCommentIdsByPostId(@Param("postId") Long postId);
+    
+    /**
+     * 评论存储的计数和实际计数
+     */
+    interface CommentCounterStats {
+        Long getCommentId();
+        
+        Integer getReplyCount();
+        
+        Integer getLikeCount();
+        
+        Long getActualReplyCount();
+        
+        Long getActualLikeCount();
+    }
 } 
\ No newline at end of file
@@ -0,0 +1,49 @@
+package com.social.repository;
+
+import com.social.entity.Follow;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface FollowRepository extends JpaRepository<Follow, Long> {
+    
+    // 检查是否已关注
+    boolean existsByFollowerIdAndFollowingId(Long followerId, Long followingId);
+    
+    // 添加关注，已关注时忽略（依赖unique_follow唯一索引），返回插入的行数
+    @Modifying
+    @Query(value = "INSERT IGNORE INTO follows (follower_id, following_id, created_at) " +
+                   "VALUES (:followerId, :followingId, NOW())", nativeQuery = true)
+    int insertIgnore(@Param("followerId") Long followerId, @Param("followingId") Long followingId);
+    
+    // 取消关注，返回删除的行数
+    @Modifying
+    @Query("DELETE FROM Follow f WHERE f.followerId = :followerId AND f.followingId = :followingId")
+    int deleteByFollowerIdAndFollowingId(@Param("followerId") Long followerId, @Param("followingId") Long followingId);
+    
+    // 分页获取粉丝（最近关注的在前）
+    Page<Follow> findByFollowingIdOrderByIdDesc(Long followingId, Pageable pageable);
+    
+    // 分页获取关注的用户（最近关注的在前）
+    Page<Follow> findByFollowerIdOrderByIdDesc(Long followerId, Pageable pageable);
+    
+    // 按关注记录ID顺序分批获取粉丝，用于动态推送（使用idx_following_id索引）
+    @Query("SELECT f FROM Follow f WHERE f.followingId = :followingId AND f.id > :afterId ORDER BY f.id")
+    List<Follow> findFollowersAfter(@Param("followingId") Long followingId, @Param("afterId") Long afterId, Pageable pageable);
+    
+    // 获取用户关注的所有用户ID
+    @Query("SELECT f.followingId FROM Follow f WHERE f.followerId = :followerId")
+    List<Long> findFollowingIds(@Param("followerId") Long followerId);
+    
+    // 获取用户关注的粉丝数不少于threshold的用户ID
+    @Query("SELECT f.followingId FROM Follow f, User u WHERE u.id = f.followingId " +
+           "AND f.followerId = :followerId AND u.followerCount >= :threshold")
+    List<Long> findFollowingIdsWithFollowersAtLeast(@Param("followerId") Long followerId, @Param("threshold") Integer threshold);
+} 
\ No newline at end of file
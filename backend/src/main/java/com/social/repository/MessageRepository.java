@@ -3,6 +3,7 @@ package com.social.repository;
 import com.social.entity.Message;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
@@ -14,6 +15,10 @@ import java.util.List;
 @Repository
 public interface MessageRepository extends JpaRepository<Message, Long> {
     
+    /**
+     * 分页获取用户消息，发送者和接收者随消息一起查询
+     */
+    @EntityGraph(attributePaths = {"fromUser", "toUser"})
     @Query("SELECT m FROM Message m WHERE m.toUser.id = :toUserId ORDER BY m.createdAt DESC")
     Page<Message> findByToUserIdOrderByCreatedAtDesc(@Param("toUserId") Long toUserId, Pageable pageable);
     
@@ -33,6 +38,7 @@ public interface MessageRepository extends JpaRepository<Message, Long> {
     /**
      * 获取系统消息（管理员发布的通知）
      */
+    @EntityGraph(attributePaths = {"fromUser", "toUser"})
     @Query("SELECT m FROM Message m WHERE m.fromUser.id = 1 ORDER BY m.createdAt DESC")
     Page<Message> findSystemMessagesOrderByCreatedAtDesc(Pageable pageable);
     
@@ -0,0 +1,47 @@
+package com.social.repository;
+
+import com.social.entity.PostLike;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface PostLikeRepository extends JpaRepository<PostLike, Long> {
+    
+    // 添加点赞，已点赞时忽略（依赖unique_like唯一索引），返回插入的行数
+    @Modifying
+    @Query(value = "INSERT IGNORE INTO likes (user_id, post_id, created_at) " +
+                   "VALUES (:userId, :postId, NOW())", nativeQuery = true)
+    int insertIgnore(@Param("userId") Long userId, @Param("postId") Long postId);
+    
+    // 取消点赞，返回删除的行数
+    @Modifying
+    @Query("DELETE FROM PostLike pl WHERE pl.userId = :userId AND pl.postId = :postId")
+    int deleteByUserIdAndPostId(@Param("userId") Long userId, @Param("postId") Long postId);
+    
+    // 点赞时间，取消点赞时用于扣减时间窗口排行榜中该点赞所在的小时分桶
+    @Query("SELECT pl.createdAt FROM PostLike pl WHERE pl.userId = :userId AND pl.postId = :postId")
+    Optional<LocalDateTime> findCreatedAt(@Param("userId") Long userId, @Param("postId") Long postId);
+    
+    // 按小时统计动态在since之后收到的点赞数，删除动态时用于扣减时间窗口排行榜
+    @Query("SELECT MIN(pl.createdAt) AS firstAt, COUNT(pl) AS count FROM PostLike pl " +
+           "WHERE pl.postId = :postId AND pl.createdAt >= :since " +
+           "GROUP BY YEAR(pl.createdAt), MONTH(pl.createdAt), DAY(pl.createdAt), HOUR(pl.createdAt)")
+    List<PostRepository.HourlyCount> countByPostIdPerHour(@Param("postId") Long postId,
+                                                          @Param("since") LocalDateTime since);
+    
+    // 删除动态的所有点赞记录
+    @Modifying
+    @Query("DELETE FROM PostLike pl WHERE pl.postId = :postId")
+    void deleteByPostId(@Param("postId") Long postId);
+    
+    // 获取用户点赞过的所有动态ID
+    @Query("SELECT pl.postId FROM PostLike pl WHERE pl.userId = :userId")
+    List<Long> findPostIdsByUserId(@Param("userId") Long userId);
+} 
\ No newline at end of file
@@ -5,9 +5,16 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
 
 @Repository
 public interface PostRepository extends JpaRepository<Post, Long> {
@@ -22,6 +29,31 @@ public interface PostRepository extends JpaRepository<Post, Long> {
      */
     Page<Post> findByUserIdOrderByCreatedAtDesc(Long userId, Pageable pageable);
     
+    /**
+     * 游标分页的第一页：按 (创建时间, ID) 倒序获取动态，不统计总数
+     */
+    List<Post> findByOrderByCreatedAtDescIdDesc(Pageable pageable);
+    
+    /**
+     * 游标分页的后续页：获取排在游标 (createdAt, id) 之后的动态，使用 idx_created_at 索引范围扫描
+     */
+    @Query("SELECT p FROM Post p WHERE p.createdAt <= :createdAt " +
+           "AND (p.createdAt < :createdAt OR p.id < :id) ORDER BY p.createdAt DESC, p.id DESC")
+    List<Post> findBeforeCursor(@Param("createdAt") LocalDateTime createdAt, @Param("id") Long id, Pageable pageable);
+    
+    /**
+     * 用户动态游标分页的第一页
+     */
+    List<Post> findByUserIdOrderByCreatedAtDescIdDesc(Long userId, Pageable pageable);
+    
+    /**
+     * 用户动态游标分页的后续页，使用 idx_user_created_at 索引
+     */
+    @Query("SELECT p FROM Post p WHERE p.userId = :userId AND p.createdAt <= :createdAt " +
+           "AND (p.createdAt < :createdAt OR p.id < :id) ORDER BY p.createdAt DESC, p.id DESC")
+    List<Post> findByUserIdBeforeCursor(@Param("userId") Long userId, @Param("createdAt") LocalDateTime createdAt,
+                                        @Param("id") Long id, Pageable pageable);
+    
     /**
      * 获取用户的所有动态
      */
@@ -32,12 +64,58 @@ public interface PostRepository extends JpaRepository<Post, Long> {
      */
     long countByUserId(Long userId);
     
+    /**
+     * 一次扫描按用户聚合指定用户ID区间内的动态数、总点赞数和总评论数（没有动态的用户记为0）
+     * 以游标方式流式读取（MySQL驱动要求fetchSize为Integer.MIN_VALUE），调用方需在只读事务内消费并关闭Stream
+     */
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "" + Integer.MIN_VALUE))
+    @Query("SELECT u.id AS userId, COUNT(p.id) AS postCount, " +
+           "COALESCE(SUM(p.likeCount), 0) AS totalLikes, COALESCE(SUM(p.commentCount), 0) AS totalComments " +
+           "FROM User u LEFT JOIN Post p ON p.userId = u.id " +
+           "WHERE u.id BETWEEN :fromUserId AND :toUserId GROUP BY u.id")
+    Stream<UserPostStats> streamUserPostStats(@Param("fromUserId") Long fromUserId, @Param("toUserId") Long toUserId);
+    
     @Query("SELECT p FROM Post p ORDER BY p.createdAt DESC")
     Page<Post> findAllOrderByCreatedAtDesc(Pageable pageable);
     
-    @Query("SELECT p FROM Post p ORDER BY p.likeCount DESC, p.commentCount DESC")
-    Page<Post> findTopPostsByLikes(Pageable pageable);
+    /**
+     * 按主键倒序获取ID小于afterId的一批动态，用于从最新动态开始向前遍历
+     */
+    List<Post> findTop500ByIdLessThanOrderByIdDesc(Long afterId);
+    
+    /**
+     * 获取指定用户们最新动态的ID（按ID倒序），用于重建首页时间线
+     */
+    @Query("SELECT p.id FROM Post p WHERE p.userId IN :userIds ORDER BY p.id DESC")
+    List<Long> findIdsByUserIdIn(@Param("userIds") List<Long> userIds, Pageable pageable);
+    
+    /**
+     * 获取指定用户们ID小于beforeId的最新动态ID，用于首页时间线拉取大V动态
+     */
+    @Query("SELECT p.id FROM Post p WHERE p.userId IN :userIds AND p.id < :beforeId ORDER BY p.id DESC")
+    List<Long> findIdsByUserIdInBeforeId(@Param("userIds") List<Long> userIds, @Param("beforeId") Long beforeId,
+                                         Pageable pageable);
     
-    @Query("SELECT p FROM Post p WHERE p.userId IN :userIds ORDER BY p.createdAt DESC")
-    Page<Post> findByUserIdsOrderByCreatedAtDesc(List<Long> userIds, Pageable pageable);
+    /**
+     * 按小时分组的活动数，用于撤销时间窗口排行榜中对应小时分桶的增量
+     */
+    interface HourlyCount {
+        // 该小时内最早一次活动的时间
+        LocalDateTime getFirstAt();
+        
+        Long getCount();
+    }
+    
+    /**
+     * 用户动态聚合统计
+     */
+    interface UserPostStats {
+        Long getUserId();
+        
+        Long getPostCount();
+        
+        Long getTotalLikes();
+        
+        Long getTotalComments();
+    }
 } 
\ No newline at end of file
@@ -2,7 +2,9 @@ package com.social.repository;
 
 import com.social.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -24,4 +26,21 @@ public interface UserRepository extends JpaRepository<User, Long> {
     
     @Query("SELECT u FROM User u ORDER BY u.followerCount DESC, u.score DESC")
     List<User> findTopUsersByFollowers();
+    
+    @Query("SELECT MIN(u.id) FROM User u")
+    Long findMinUserId();
+    
+    @Query("SELECT MAX(u.id) FROM User u")
+    Long findMaxUserId();
+    
+    @Query("SELECT u.followerCount FROM User u WHERE u.id = :userId")
+    Integer findFollowerCountById(@Param("userId") Long userId);
+    
+    @Modifying
+    @Query("UPDATE User u SET u.followerCount = COALESCE(u.followerCount, 0) + :delta WHERE u.id = :userId")
+    int incrementFollowerCount(@Param("userId") Long userId, @Param("delta") int delta);
+    
+    @Modifying
+    @Query("UPDATE User u SET u.followingCount = COALESCE(u.followingCount, 0) + :delta WHERE u.id = :userId")
+    int incrementFollowingCount(@Param("userId") Long userId, @Param("delta") int delta);
 } 
\ No newline at end of file
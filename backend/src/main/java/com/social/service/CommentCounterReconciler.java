@@ -0,0 +1,141 @@
+package com.social.service;
+
+import com.social.repository.CommentRepository;
+import com.social.util.RedisLease;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * 评论计数校正
+ * 评论的回复数、点赞数在写入时原子更新，读取时直接使用；本任务定期流式扫描comments表，
+ * 找出与comment_likes、回复实际数量不一致的评论，分批重新计算；随后清除Redis中已没有未写入切换的评论残留的点赞数差值
+ * 多节点部署时只有拿到校正租约的节点执行；租约值带有fencing token，扫描期间定期续约，只释放自己持有的租约
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class CommentCounterReconciler {
+    
+    private final CommentRepository commentRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final PlatformTransactionManager transactionManager;
+    private final LikedCommentService likedCommentService;
+    
+    private static final String LEASE_KEY = "comments:counter:reconcile:lease";
+    private static final String FENCING_TOKEN_KEY = "comments:counter:reconcile:fencing_token";
+    
+    // 每批校正的评论数
+    private static final int CHUNK_SIZE = 500;
+    
+    // 计数在UPDATE语句中按当前数据重新计算，扫描到写入之间并发的点赞、回复不会被覆盖；
+    // 回复数的子查询是聚合派生表，会先物化，可以读取正在更新的comments表
+    private static final String FIX_SQL = "UPDATE comments SET " +
+        "reply_count = (SELECT r.total FROM (SELECT COUNT(*) AS total FROM comments WHERE parent_id = ?) r), " +
+        "like_count = (SELECT COUNT(*) FROM comment_likes WHERE comment_id = ?) WHERE id = ?";
+    
+    @Value("${comments.reconcile.lease-ttl-ms:300000}")
+    private long leaseTtlMs;
+    
+    private final String nodeId = UUID.randomUUID().toString();
+    
+    /**
+     * 定时校正评论计数
+     */
+    @Scheduled(initialDelayString = "${comments.reconcile.initial-delay-ms:60000}",
+               fixedDelayString = "${comments.reconcile.interval-ms:3600000}")
+    public void scheduledReconcile() {
+        try {
+            RedisLease lease = RedisLease.tryAcquire(stringRedisTemplate, LEASE_KEY, FENCING_TOKEN_KEY, nodeId, leaseTtlMs);
+            if (lease == null) {
+                log.debug("其他节点正在校正评论计数，跳过本次校正");
+                return;
+            }
+            try {
+                reconcile(lease);
+            } finally {
+                lease.release();
+            }
+        } catch (Exception e) {
+            log.error("校正评论计数失败", e);
+        }
+    }
+    
+    /**
+     * 扫描全部评论并校正不一致的计数
+     *
+     * @return 校正的评论数
+     */
+    public long reconcile() {
+        return reconcile(null);
+    }
+    
+    /**
+     * 扫描全部评论并校正不一致的计数；lease不为空时扫描期间定期续约，租约已失效时停止
+     */
+    private long reconcile(RedisLease lease) {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setReadOnly(true);
+        
+        long[] result = new long[2];
+        transactionTemplate.executeWithoutResult(status -> {
+            List<Long> chunk = new ArrayList<>(CHUNK_SIZE);
+            try (Stream<CommentRepository.CommentCounterStats> stats = commentRepository.streamCommentCounterStats()) {
+                Iterator<CommentRepository.CommentCounterStats> iterator = stats.iterator();
+                while (iterator.hasNext()) {
+                    CommentRepository.CommentCounterStats stat = iterator.next();
+                    result[0]++;
+                    if (lease != null) {
+                        lease.renewIfDue();
+                    }
+                    if (isDrifted(stat.getReplyCount(), stat.getActualReplyCount())
+                        || isDrifted(stat.getLikeCount(), stat.getActualLikeCount())) {
+                        chunk.add(stat.getCommentId());
+                    }
+                    if (chunk.size() >= CHUNK_SIZE) {
+                        result[1] += fix(chunk);
+                        chunk.clear();
+                    }
+                }
+            }
+            if (!chunk.isEmpty()) {
+                result[1] += fix(chunk);
+            }
+        });
+        long cleared = likedCommentService.cleanStalePendingLikeCounts();
+        log.info("评论计数校正完成: scanned={}, fixed={}, stalePendingCleared={}", result[0], result[1], cleared);
+        return result[1];
+    }
+    
+    /**
+     * 批量重新计算一批评论的计数；流式读取占用着当前连接，写入在独立的连接和事务中执行
+     */
+    private int fix(List<Long> commentIds) {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setPropagationBehavior(TransactionTemplate.PROPAGATION_REQUIRES_NEW);
+        transactionTemplate.executeWithoutResult(status ->
+            jdbcTemplate.batchUpdate(FIX_SQL, commentIds, commentIds.size(), (ps, commentId) -> {
+                ps.setLong(1, commentId);
+                ps.setLong(2, commentId);
+                ps.setLong(3, commentId);
+            }));
+        return commentIds.size();
+    }
+    
+    private static boolean isDrifted(Integer stored, Long actual) {
+        return stored == null || stored.longValue() != actual;
+    }
+} 
\ No newline at end of file
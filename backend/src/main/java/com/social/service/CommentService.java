@@ -1,13 +1,14 @@
 package com.social.service;
 
 import com.social.entity.Comment;
-import com.social.entity.CommentLike;
 import com.social.entity.Post;
 import com.social.entity.User;
 import com.social.repository.CommentLikeRepository;
 import com.social.repository.CommentRepository;
 import com.social.repository.PostRepository;
 import com.social.repository.UserRepository;
+import com.social.util.CursorPage;
+import com.social.util.KeysetCursor;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
@@ -15,6 +16,8 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -29,6 +32,13 @@ public class CommentService {
     private final PostRepository postRepository;
     private final UserRepository userRepository;
     private final RankingService rankingService;
+    private final HotPostService hotPostService;
+    private final UserSummaryService userSummaryService;
+    private final PostCounterBuffer postCounterBuffer;
+    private final LikedCommentService likedCommentService;
+    
+    // 顶级评论附带的回复条数
+    private static final int REPLY_PREVIEW_SIZE = 3;
     
     /**
      * 获取帖子的评论列表（分页）
@@ -38,7 +48,7 @@ public class CommentService {
         Page<Comment> comments = commentRepository.findByPostIdAndParentIdIsNullOrderByCreatedAtDesc(postId, pageable);
         
         // 为每个评论添加用户信息和回复信息
-        comments.getContent().forEach(comment -> enrichComment(comment, currentUserId));
+        enrichComments(comments.getContent(), currentUserId);
         
         return comments;
     }
@@ -77,27 +87,33 @@ public class CommentService {
         
         Comment savedComment = commentRepository.save(comment);
         
+        // 更新父评论的回复数量
+        if (parentId != null) {
+            commentRepository.incrementReplyCount(parentId, 1);
+        }
+        
         // 更新帖子的评论数量
         if (parentId == null) {
-            post.setCommentCount(post.getCommentCount() + 1);
-            postRepository.save(post);
+            postCounterBuffer.addAfterCommit(postId, 0, 1, 0);
             
-            // 实时更新排行榜
-            rankingService.updateUserPostComments(post.getUserId());
-            rankingService.updateUserCompositeScore(post.getUserId());
+            // 增量更新排行榜和动态热度
+            rankingService.incrementUserPostComments(post.getUserId(), 1);
+            hotPostService.onPostChanged(post);
         }
         
         // 添加用户信息
-        enrichComment(savedComment, userId);
+        enrichComments(Collections.singletonList(savedComment), userId);
         
         return savedComment;
     }
     
     /**
-     * 删除评论
+     * 删除评论及其所有回复
+     *
+     * @return 删除的评论数（包含所有后代回复）
      */
     @Transactional
-    public void deleteComment(Long postId, Long commentId, Long userId) {
+    public int deleteComment(Long postId, Long commentId, Long userId) {
         Comment comment = commentRepository.findById(commentId)
                 .orElseThrow(() -> new RuntimeException("评论不存在"));
         
@@ -115,30 +131,42 @@ public class CommentService {
             }
         }
         
-        // 删除评论的所有点赞记录
-        commentLikeRepository.deleteByCommentId(commentId);
+        // 一次查询取出评论及其所有后代回复，在删除之前确定删除范围和数量
+        List<Long> subtreeIds = commentRepository.findSubtreeIds(commentId).stream()
+                .map(Number::longValue)
+                .collect(Collectors.toList());
         
-        // 删除评论及其所有回复
-        deleteCommentAndReplies(commentId);
+        // 删除评论及其所有回复的点赞记录，再删除评论本身
+        commentLikeRepository.deleteByCommentIds(subtreeIds);
+        commentRepository.deleteByIdsChildrenFirst(subtreeIds);
         
-        // 更新帖子的评论数量
+        // 更新父评论的回复数量
+        if (comment.getParentId() != null) {
+            commentRepository.incrementReplyCount(comment.getParentId(), -1);
+            return subtreeIds.size();
+        }
+        
+        // 帖子的评论数只统计顶级评论（与发表评论时一致），删除顶级评论时减1
         Post post = postRepository.findById(postId)
                 .orElseThrow(() -> new RuntimeException("帖子不存在"));
         
-        // 计算需要减少的评论数量
-        long deletedCount = countCommentAndReplies(commentId);
-        post.setCommentCount(Math.max(0, post.getCommentCount() - (int) deletedCount));
-        postRepository.save(post);
-        
-        // 实时更新排行榜
-        rankingService.updateUserPostComments(post.getUserId());
-        rankingService.updateUserCompositeScore(post.getUserId());
+        // 当前评论数包含写缓冲中尚未写入数据库的增量
+        long previousCount = (post.getCommentCount() != null ? post.getCommentCount() : 0)
+            + postCounterBuffer.pending(postId)[1];
+        if (previousCount > 0) {
+            postCounterBuffer.addAfterCommit(postId, 0, -1, 0);
+            
+            // 增量更新排行榜和动态热度，时间窗口排行榜扣减该评论所在的小时分桶
+            rankingService.revertUserActivity(post.getUserId(), 0, 0, -1, comment.getCreatedAt());
+            hotPostService.onPostChanged(post);
+        }
+        return subtreeIds.size();
     }
     
     /**
      * 点赞/取消点赞评论
+     * 点赞状态在Redis中原子切换，点赞记录和点赞数由写缓冲批量写入数据库，本方法不写数据库
      */
-    @Transactional
     public Comment toggleCommentLike(Long postId, Long commentId, Long userId) {
         // 验证评论是否存在
         Comment comment = commentRepository.findById(commentId)
@@ -149,104 +177,79 @@ public class CommentService {
             throw new RuntimeException("评论不属于该帖子");
         }
         
-        // 验证用户是否存在
-        User user = userRepository.findById(userId)
-                .orElseThrow(() -> new RuntimeException("用户不存在"));
-        
-        // 检查是否已经点赞
-        boolean alreadyLiked = commentLikeRepository.existsByUserIdAndCommentId(userId, commentId);
-        
-        if (alreadyLiked) {
-            // 如果已经点赞，则取消点赞
-            commentLikeRepository.deleteByUserIdAndCommentId(userId, commentId);
-            comment.setLikeCount(Math.max(0, comment.getLikeCount() - 1));
-        } else {
-            // 如果没有点赞，则添加点赞
-            CommentLike commentLike = new CommentLike();
-            commentLike.setUserId(userId);
-            commentLike.setCommentId(commentId);
-            commentLikeRepository.save(commentLike);
-            comment.setLikeCount(comment.getLikeCount() + 1);
+        // 验证用户是否存在（读取用户摘要缓存）
+        if (userSummaryService.getSummaries(Collections.singletonList(userId)).isEmpty()) {
+            throw new RuntimeException("用户不存在");
         }
         
-        Comment savedComment = commentRepository.save(comment);
+        likedCommentService.toggle(userId, commentId);
         
-        // 添加用户信息和点赞状态
-        enrichComment(savedComment, userId);
+        // 添加用户信息、点赞状态和尚未写入的点赞数
+        enrichComments(Collections.singletonList(comment), userId);
         
-        return savedComment;
+        return comment;
     }
     
     /**
-     * 获取评论的回复列表
+     * 按游标分页获取评论的回复，按创建时间升序；cursor为空时返回第一页
      */
-    public List<Comment> getCommentReplies(Long commentId, Long currentUserId) {
-        List<Comment> replies = commentRepository.findByParentIdOrderByCreatedAtAsc(commentId);
-        replies.forEach(comment -> enrichComment(comment, currentUserId));
-        return replies;
-    }
-    
-    /**
-     * 丰富评论信息（添加用户信息和回复信息）
-     */
-    private void enrichComment(Comment comment, Long currentUserId) {
-        // 添加用户信息
-        User user = userRepository.findById(comment.getUserId()).orElse(null);
-        if (user != null) {
-            Map<String, Object> userInfo = new HashMap<>();
-            userInfo.put("id", user.getId());
-            userInfo.put("username", user.getUsername());
-            userInfo.put("nickname", user.getNickname());
-            userInfo.put("avatar", user.getAvatar());
-            comment.setUserInfo(userInfo);
-        }
-        
-        // 添加回复数量
-        Long replyCount = commentRepository.countByParentId(comment.getId());
-        comment.setReplyCount(replyCount.intValue());
-        
-        // 添加点赞数量（从数据库重新获取）
-        Long likeCount = commentLikeRepository.countByCommentId(comment.getId());
-        comment.setLikeCount(likeCount.intValue());
-        
-        // 添加当前用户是否已点赞
-        if (currentUserId != null) {
-            boolean isLiked = commentLikeRepository.existsByUserIdAndCommentId(currentUserId, comment.getId());
-            comment.setIsLiked(isLiked);
+    public CursorPage<Comment> getCommentReplies(Long commentId, String cursor, int size, Long currentUserId) {
+        Pageable limit = PageRequest.of(0, size + 1);
+        List<Comment> replies;
+        if (cursor == null || cursor.isEmpty()) {
+            replies = commentRepository.findByParentIdOrderByCreatedAtAscIdAsc(commentId, limit);
+        } else {
+            KeysetCursor position = KeysetCursor.decode(cursor);
+            replies = commentRepository.findByParentIdAfterCursor(commentId, position.getCreatedAt(), position.getId(), limit);
         }
         
-        // 如果是顶级评论，添加前几条回复
-        if (comment.getParentId() == null) {
-            List<Comment> replies = commentRepository.findByParentIdOrderByCreatedAtAsc(comment.getId());
-            // 只取前3条回复
-            List<Comment> limitedReplies = replies.stream()
-                    .limit(3)
-                    .peek(reply -> enrichComment(reply, currentUserId))
-                    .collect(Collectors.toList());
-            comment.setReplies(limitedReplies);
+        String nextCursor = null;
+        if (replies.size() > size) {
+            replies = new ArrayList<>(replies.subList(0, size));
+            Comment last = replies.get(size - 1);
+            nextCursor = new KeysetCursor(last.getCreatedAt(), last.getId()).encode();
         }
+        enrichComments(replies, currentUserId);
+        return new CursorPage<>(replies, nextCursor);
     }
     
     /**
-     * 递归删除评论及其所有回复
+     * 丰富评论信息（添加用户信息和回复信息）
+     * 整页评论共用固定的几次批量查询：前几条回复、作者、当前用户的点赞状态，查询次数与评论数量无关
      */
-    private void deleteCommentAndReplies(Long commentId) {
-        List<Comment> replies = commentRepository.findByParentIdOrderByCreatedAtAsc(commentId);
-        for (Comment reply : replies) {
-            deleteCommentAndReplies(reply.getId());
+    private void enrichComments(List<Comment> comments, Long currentUserId) {
+        List<Comment> allComments = new ArrayList<>(comments);
+        
+        // 一次查询加载所有顶级评论的前3条回复
+        List<Long> topLevelIds = comments.stream()
+                .filter(comment -> comment.getParentId() == null)
+                .map(Comment::getId)
+                .collect(Collectors.toList());
+        if (!topLevelIds.isEmpty()) {
+            Map<Long, List<Comment>> repliesByParent = new HashMap<>();
+            for (Comment reply : commentRepository.findTopRepliesByParentIds(topLevelIds, REPLY_PREVIEW_SIZE)) {
+                repliesByParent.computeIfAbsent(reply.getParentId(), id -> new ArrayList<>()).add(reply);
+            }
+            for (Comment comment : comments) {
+                if (comment.getParentId() == null) {
+                    List<Comment> replies = repliesByParent.getOrDefault(comment.getId(), new ArrayList<>());
+                    comment.setReplies(replies);
+                    allComments.addAll(replies);
+                }
+            }
         }
-        commentRepository.deleteById(commentId);
+        
+        // 添加用户信息
+        userSummaryService.attachSummaries(allComments, Comment::getUserId, Comment::setUserInfo);
+        
+        enrichCommentStats(allComments, currentUserId);
     }
     
     /**
-     * 递归计算评论及其回复的数量
+     * 添加当前用户的点赞状态（一次Redis管道请求）和尚未写入数据库的点赞数；回复数、点赞数使用评论中维护的计数
      */
-    private long countCommentAndReplies(Long commentId) {
-        long count = 1; // 当前评论
-        List<Comment> replies = commentRepository.findByParentIdOrderByCreatedAtAsc(commentId);
-        for (Comment reply : replies) {
-            count += countCommentAndReplies(reply.getId());
-        }
-        return count;
+    private void enrichCommentStats(List<Comment> comments, Long currentUserId) {
+        likedCommentService.mergePendingLikeCounts(comments);
+        likedCommentService.fillLikedState(comments, currentUserId);
     }
 } 
\ No newline at end of file
@@ -0,0 +1,103 @@
+package com.social.service;
+
+import com.social.entity.Follow;
+import com.social.repository.FollowRepository;
+import com.social.repository.UserRepository;
+import com.social.util.TransactionUtils;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 关注关系
+ * 关注和取消关注是幂等的：关注记录依赖unique_follow唯一索引插入，只有实际插入或删除了记录时才更新双方的关注数和粉丝数
+ */
+@Service
+@RequiredArgsConstructor
+public class FollowService {
+    
+    private final FollowRepository followRepository;
+    private final UserRepository userRepository;
+    private final UserSummaryService userSummaryService;
+    private final TimelineService timelineService;
+    private final NotificationService notificationService;
+    
+    /**
+     * 关注用户
+     *
+     * @return 本次是否新增了关注（已关注时返回false）
+     */
+    @Transactional
+    public boolean follow(Long followerId, Long followingId) {
+        if (followerId.equals(followingId)) {
+            throw new RuntimeException("不能关注自己");
+        }
+        if (!userRepository.existsById(followerId) || !userRepository.existsById(followingId)) {
+            throw new RuntimeException("用户不存在");
+        }
+        
+        if (followRepository.insertIgnore(followerId, followingId) == 0) {
+            return false;
+        }
+        userRepository.incrementFollowingCount(followerId, 1);
+        userRepository.incrementFollowerCount(followingId, 1);
+        
+        timelineService.onFollow(followerId, followingId);
+        TransactionUtils.runAfterCommit(() -> notificationService.sendFollowNotification(followerId, followingId));
+        return true;
+    }
+    
+    /**
+     * 取消关注
+     *
+     * @return 本次是否删除了关注（未关注时返回false）
+     */
+    @Transactional
+    public boolean unfollow(Long followerId, Long followingId) {
+        if (followRepository.deleteByFollowerIdAndFollowingId(followerId, followingId) == 0) {
+            return false;
+        }
+        userRepository.incrementFollowingCount(followerId, -1);
+        userRepository.incrementFollowerCount(followingId, -1);
+        
+        timelineService.onUnfollow(followerId, followingId);
+        return true;
+    }
+    
+    /**
+     * 是否已关注
+     */
+    public boolean isFollowing(Long followerId, Long followingId) {
+        return followRepository.existsByFollowerIdAndFollowingId(followerId, followingId);
+    }
+    
+    /**
+     * 分页获取粉丝的用户摘要（最近关注的在前）
+     */
+    public Page<Map<String, Object>> getFollowers(Long userId, int page, int size) {
+        Pageable pageable = PageRequest.of(page, size);
+        return toSummaries(followRepository.findByFollowingIdOrderByIdDesc(userId, pageable), Follow::getFollowerId);
+    }
+    
+    /**
+     * 分页获取关注的用户摘要（最近关注的在前）
+     */
+    public Page<Map<String, Object>> getFollowing(Long userId, int page, int size) {
+        Pageable pageable = PageRequest.of(page, size);
+        return toSummaries(followRepository.findByFollowerIdOrderByIdDesc(userId, pageable), Follow::getFollowingId);
+    }
+    
+    private Page<Map<String, Object>> toSummaries(Page<Follow> follows, Function<Follow, Long> userIdGetter) {
+        List<Long> userIds = follows.getContent().stream().map(userIdGetter).collect(Collectors.toList());
+        Map<Long, Map<String, Object>> summaries = userSummaryService.getSummaries(userIds);
+        return follows.map(follow -> summaries.get(userIdGetter.apply(follow)));
+    }
+} 
\ No newline at end of file
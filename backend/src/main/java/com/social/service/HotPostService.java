@@ -0,0 +1,191 @@
+package com.social.service;
+
+import com.social.entity.Post;
+import com.social.repository.PostRepository;
+import com.social.util.RedisLease;
+import com.social.util.TransactionUtils;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * 热门动态
+ * 热门动态保存在Redis有序集合中（成员为十进制动态ID），点赞、评论、分享变化时增量更新单个动态的热度，读取时不扫描posts表
+ * 热度按半衰期指数衰减：互动量 × 2^(-动态年龄/半衰期)。取以2为底的对数后等价于
+ * log2(1 + 互动量) + 发布时间/半衰期，与当前时间无关，因此已写入的分数不需要随时间重算，旧动态自然排到后面
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class HotPostService {
+    
+    private final RedisTemplate<String, Long> longRedisTemplate;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final PostRepository postRepository;
+    private final PostCounterBuffer postCounterBuffer;
+    
+    static final String HOT_POSTS_KEY = "posts:hot";
+    // 回填租约，回填期间按批续约，只释放自己持有的租约
+    private static final String SEED_LEASE_KEY = "posts:hot:seeding";
+    private static final String SEED_FENCING_TOKEN_KEY = "posts:hot:seeding:fencing_token";
+    private static final long SEED_LEASE_TTL_MS = 60000;
+    
+    // 互动量权重：点赞1、评论2、分享3
+    static final int LIKE_WEIGHT = 1;
+    static final int COMMENT_WEIGHT = 2;
+    static final int SHARE_WEIGHT = 3;
+    
+    private static final RedisScript<Long> UPDATE_SCRIPT =
+        RedisScript.of(new ClassPathResource("scripts/hot_post_update.lua"), Long.class);
+    
+    @Value("${posts.hot.half-life-hours:12}")
+    private double halfLifeHours;
+    
+    @Value("${posts.hot.capacity:10000}")
+    private int capacity;
+    
+    @Value("${posts.hot.seed-hours:168}")
+    private long seedHours;
+    
+    private final String nodeId = UUID.randomUUID().toString();
+    
+    /**
+     * 动态的点赞数、评论数或分享数变化后调用，事务提交后按当前计数写入热度
+     * 计数为动态的数据库计数加上写缓冲中尚未写入的增量，调用前应先登记本次的计数增量
+     */
+    public void onPostChanged(Post post) {
+        Post snapshot = new Post();
+        snapshot.setId(post.getId());
+        snapshot.setCreatedAt(post.getCreatedAt());
+        snapshot.setLikeCount(post.getLikeCount());
+        snapshot.setCommentCount(post.getCommentCount());
+        snapshot.setShareCount(post.getShareCount());
+        TransactionUtils.runAfterCommit(() -> {
+            postCounterBuffer.merge(Collections.singletonList(snapshot));
+            updateScore(snapshot.getId(), hotScore(snapshot));
+        });
+    }
+    
+    /**
+     * 动态删除后调用，事务提交后从热门动态中移除
+     */
+    public void onPostDeleted(Long postId) {
+        TransactionUtils.runAfterCommit(() -> removePosts(Collections.singletonList(postId)));
+    }
+    
+    /**
+     * 按热度顺序获取热门动态ID区间（start、end从0开始，均包含）
+     */
+    public List<Long> getHotPostIds(long start, long end) {
+        Set<Long> postIds = longRedisTemplate.opsForZSet().reverseRange(HOT_POSTS_KEY, start, end);
+        return postIds != null ? new ArrayList<>(postIds) : Collections.emptyList();
+    }
+    
+    /**
+     * 热门动态总数
+     */
+    public long getHotPostCount() {
+        Long count = longRedisTemplate.opsForZSet().zCard(HOT_POSTS_KEY);
+        return count != null ? count : 0;
+    }
+    
+    /**
+     * 从热门动态中移除指定动态（例如读取时发现动态已不存在）
+     */
+    public void removePosts(Collection<Long> postIds) {
+        if (postIds.isEmpty()) {
+            return;
+        }
+        try {
+            longRedisTemplate.opsForZSet().remove(HOT_POSTS_KEY, postIds.toArray());
+        } catch (Exception e) {
+            log.error("移除热门动态失败: postIds={}", postIds, e);
+        }
+    }
+    
+    /**
+     * 热门动态不存在时（首次部署或Redis数据丢失）从最新的动态向前回填，直到超出回填时间范围或达到容量上限
+     * 多节点同时启动时只有拿到回填租约的节点执行；ZADD是幂等的，回填期间的增量更新不会丢失
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void seedIfMissing() {
+        try {
+            if (Boolean.TRUE.equals(stringRedisTemplate.hasKey(HOT_POSTS_KEY))) {
+                return;
+            }
+            RedisLease lease = RedisLease.tryAcquire(stringRedisTemplate,
+                SEED_LEASE_KEY, SEED_FENCING_TOKEN_KEY, nodeId, SEED_LEASE_TTL_MS);
+            if (lease == null) {
+                return;
+            }
+            try {
+                LocalDateTime since = LocalDateTime.now().minusHours(seedHours);
+                long afterId = Long.MAX_VALUE;
+                int seeded = 0;
+                while (seeded < capacity) {
+                    lease.renewIfDue();
+                    List<Post> batch = postRepository.findTop500ByIdLessThanOrderByIdDesc(afterId);
+                    if (batch.isEmpty()) {
+                        break;
+                    }
+                    postCounterBuffer.merge(batch);
+                    for (Post post : batch) {
+                        updateScore(post.getId(), hotScore(post));
+                    }
+                    seeded += batch.size();
+                    Post oldest = batch.get(batch.size() - 1);
+                    if (oldest.getCreatedAt() != null && oldest.getCreatedAt().isBefore(since)) {
+                        break;
+                    }
+                    afterId = oldest.getId();
+                }
+                log.info("热门动态回填完成: posts={}", seeded);
+            } finally {
+                lease.release();
+            }
+        } catch (Exception e) {
+            log.error("热门动态回填失败", e);
+        }
+    }
+    
+    /**
+     * 计算动态热度：log2(1 + 互动量) + 发布时间（秒）/ 半衰期（秒）
+     */
+    double hotScore(Post post) {
+        long engagement = count(post.getLikeCount()) * LIKE_WEIGHT
+            + count(post.getCommentCount()) * COMMENT_WEIGHT
+            + count(post.getShareCount()) * SHARE_WEIGHT;
+        LocalDateTime createdAt = post.getCreatedAt() != null ? post.getCreatedAt() : LocalDateTime.now();
+        long createdSeconds = createdAt.atZone(ZoneId.systemDefault()).toEpochSecond();
+        return Math.log1p(engagement) / Math.log(2) + createdSeconds / (halfLifeHours * 3600);
+    }
+    
+    private void updateScore(Long postId, double score) {
+        try {
+            stringRedisTemplate.execute(UPDATE_SCRIPT, Collections.singletonList(HOT_POSTS_KEY),
+                String.valueOf(score), String.valueOf(postId), String.valueOf(capacity));
+        } catch (Exception e) {
+            log.error("更新动态热度失败: postId={}", postId, e);
+        }
+    }
+    
+    private static long count(Integer value) {
+        return value != null && value > 0 ? value : 0;
+    }
+} 
\ No newline at end of file
@@ -0,0 +1,413 @@
+package com.social.service;
+
+import com.social.entity.Comment;
+import com.social.repository.CommentLikeRepository;
+import com.social.repository.CommentRepository;
+import com.social.util.RedisLease;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.SetOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 用户点赞过的评论
+ * 点赞状态以Redis为准：每个用户点赞过的评论ID保存在集合 likes:comment:user:{userId} 中（占位成员0表示已从数据库完整加载），
+ * 点赞、取消点赞由Lua脚本原子切换，评论列表一次管道请求判断整页评论的点赞状态
+ * 切换由脚本登记到Redis中的待写入集合，定时由拿到写入租约的节点分批取出，写入comment_likes并按实际增删的行数更新评论点赞数；
+ * 写入前重新读取Redis中的最终状态，同一用户在多个节点上的连续切换以最后的状态为准；取出的一批在确认写入前一直保留，
+ * 写入失败或节点宕机后重新写入
+ * 尚未写入的点赞数差值保存在Redis哈希中，由切换脚本累加、写入数据库后按实际写入的增量扣减，各节点共享，在读取评论时合并；
+ * 扣减失败残留的差值由评论计数校正任务清除
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class LikedCommentService {
+    
+    private final RedisTemplate<String, Long> longRedisTemplate;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final CommentLikeRepository commentLikeRepository;
+    private final CommentRepository commentRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+    
+    private static final String LIKED_KEY_PREFIX = "likes:comment:user:";
+    
+    // 每条评论Redis中的点赞数与数据库点赞数之差，差值归零时删除
+    private static final String PENDING_COUNTS_KEY = "likes:comment:pending_counts";
+    
+    // 待写入数据库的切换，以及已取出、尚未确认写入的一批，成员为 用户ID:评论ID
+    private static final String DIRTY_KEY = "likes:comment:dirty";
+    private static final String FLUSHING_KEY = "likes:comment:dirty:flushing";
+    
+    // 写入租约，同一时间只有一个节点取出并写入切换
+    private static final String FLUSH_LEASE_KEY = "likes:comment:flush:lease";
+    private static final String FLUSH_FENCING_TOKEN_KEY = "likes:comment:flush:fencing_token";
+    private static final long FLUSH_LEASE_TTL_MS = 30000;
+    
+    // 每批写入的切换数
+    private static final int FLUSH_BATCH_SIZE = 1000;
+    
+    // 清除残留差值时允许的未写入切换数上限，超过时说明写入积压，跳过本次清除
+    private static final int CLEAN_MAX_DIRTY = 100000;
+    
+    // 已完整加载的标记成员
+    private static final Long LOADED_MARKER = 0L;
+    
+    private static final RedisScript<Long> TOGGLE_SCRIPT =
+        RedisScript.of(new ClassPathResource("scripts/comment_like_toggle.lua"), Long.class);
+    
+    private static final RedisScript<Long> LOAD_SCRIPT =
+        RedisScript.of(new ClassPathResource("scripts/liked_set_load.lua"), Long.class);
+    
+    private static final RedisScript<List> DRAIN_SCRIPT =
+        RedisScript.of(new ClassPathResource("scripts/comment_like_drain.lua"), List.class);
+    
+    private static final RedisScript<Long> COUNT_APPLIED_SCRIPT =
+        RedisScript.of(new ClassPathResource("scripts/comment_like_count_applied.lua"), Long.class);
+    
+    private static final RedisScript<Long> PENDING_CLEAN_SCRIPT =
+        RedisScript.of(new ClassPathResource("scripts/comment_like_pending_clean.lua"), Long.class);
+    
+    // 评论已被删除时不插入点赞记录
+    private static final String INSERT_SQL = "INSERT IGNORE INTO comment_likes (user_id, comment_id, created_at) " +
+        "SELECT ?, id, NOW(6) FROM comments WHERE id = ?";
+    private static final String DELETE_SQL = "DELETE FROM comment_likes WHERE user_id = ? AND comment_id = ?";
+    private static final String UPDATE_COUNT_SQL =
+        "UPDATE comments SET like_count = GREATEST(COALESCE(like_count, 0) + ?, 0) WHERE id = ?";
+    
+    @Value("${likes.user-set-ttl-hours:168}")
+    private long ttlHours;
+    
+    private final String nodeId = UUID.randomUUID().toString();
+    
+    /**
+     * 切换用户对评论的点赞状态
+     *
+     * @return 切换后是否为已点赞
+     */
+    public boolean toggle(Long userId, Long commentId) {
+        List<String> keys = Arrays.asList(likedKey(userId), PENDING_COUNTS_KEY, DIRTY_KEY);
+        String ttlSeconds = String.valueOf(TimeUnit.HOURS.toSeconds(ttlHours));
+        String dirtyMember = new LikeKey(userId, commentId).toMember();
+        Long result = stringRedisTemplate.execute(TOGGLE_SCRIPT, keys, String.valueOf(commentId), ttlSeconds, dirtyMember);
+        if (result != null && result < 0) {
+            load(userId);
+            result = stringRedisTemplate.execute(TOGGLE_SCRIPT, keys, String.valueOf(commentId), ttlSeconds, dirtyMember);
+        }
+        if (result == null || result < 0) {
+            throw new RuntimeException("点赞失败，请稍后重试");
+        }
+        return result == 1;
+    }
+    
+    /**
+     * 为一组评论填充当前用户的点赞状态，currentUserId为空时不填充
+     */
+    public void fillLikedState(List<Comment> comments, Long currentUserId) {
+        if (currentUserId == null || comments.isEmpty()) {
+            return;
+        }
+        List<Long> commentIds = new ArrayList<>(comments.size());
+        for (Comment comment : comments) {
+            commentIds.add(comment.getId());
+        }
+        Set<Long> liked = getLikedCommentIds(currentUserId, commentIds);
+        for (Comment comment : comments) {
+            comment.setIsLiked(liked.contains(comment.getId()));
+        }
+    }
+    
+    /**
+     * 把尚未写入数据库的点赞数增量合并到评论上，只用于返回给调用方的评论
+     */
+    public void mergePendingLikeCounts(List<Comment> comments) {
+        if (comments.isEmpty()) {
+            return;
+        }
+        List<Object> commentIds = new ArrayList<>(comments.size());
+        for (Comment comment : comments) {
+            commentIds.add(String.valueOf(comment.getId()));
+        }
+        try {
+            List<Object> pending = stringRedisTemplate.opsForHash().multiGet(PENDING_COUNTS_KEY, commentIds);
+            for (int i = 0; i < comments.size(); i++) {
+                if (pending.get(i) != null) {
+                    Comment comment = comments.get(i);
+                    int likeCount = comment.getLikeCount() != null ? comment.getLikeCount() : 0;
+                    comment.setLikeCount((int) Math.max(likeCount + Long.parseLong((String) pending.get(i)), 0));
+                }
+            }
+        } catch (Exception e) {
+            log.error("读取尚未写入的评论点赞数失败: commentIds={}", commentIds, e);
+        }
+    }
+    
+    /**
+     * 返回commentIds中用户点赞过的评论ID；Redis不可用时回退到数据库
+     */
+    public Set<Long> getLikedCommentIds(Long userId, List<Long> commentIds) {
+        try {
+            String key = likedKey(userId);
+            List<Object> members = isMembers(key, commentIds);
+            if (!Boolean.TRUE.equals(members.get(0))) {
+                load(userId);
+                members = isMembers(key, commentIds);
+            }
+            Set<Long> liked = new HashSet<>();
+            for (int i = 0; i < commentIds.size(); i++) {
+                if (Boolean.TRUE.equals(members.get(i + 1))) {
+                    liked.add(commentIds.get(i));
+                }
+            }
+            return liked;
+        } catch (Exception e) {
+            log.error("读取用户评论点赞状态失败，回退到数据库: userId={}", userId, e);
+            return new HashSet<>(commentLikeRepository.findLikedCommentIds(userId, commentIds));
+        }
+    }
+    
+    /**
+     * 把Redis中登记的点赞切换分批写入数据库，只有拿到写入租约的节点执行
+     */
+    @Scheduled(fixedDelayString = "${likes.comment-flush-interval-ms:500}")
+    public synchronized void flush() {
+        RedisLease lease = null;
+        try {
+            Long dirty = stringRedisTemplate.countExistingKeys(Arrays.asList(DIRTY_KEY, FLUSHING_KEY));
+            if (dirty == null || dirty == 0) {
+                return;
+            }
+            lease = RedisLease.tryAcquire(stringRedisTemplate, FLUSH_LEASE_KEY, FLUSH_FENCING_TOKEN_KEY, nodeId, FLUSH_LEASE_TTL_MS);
+            if (lease == null) {
+                return;
+            }
+            int flushed;
+            do {
+                lease.renewIfDue();
+                flushed = flushBatch();
+            } while (flushed >= FLUSH_BATCH_SIZE);
+        } catch (Exception e) {
+            log.error("写入评论点赞失败，稍后重试", e);
+        } finally {
+            if (lease != null) {
+                lease.release();
+            }
+        }
+    }
+    
+    /**
+     * 停止前写入剩余的点赞切换
+     */
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+    
+    /**
+     * 清除已没有未写入切换的评论的点赞数差值，由评论计数校正任务定期调用
+     *
+     * @return 清除的评论数，未写入的切换积压时返回-1
+     */
+    public long cleanStalePendingLikeCounts() {
+        Long cleared = stringRedisTemplate.execute(PENDING_CLEAN_SCRIPT,
+            Arrays.asList(PENDING_COUNTS_KEY, DIRTY_KEY, FLUSHING_KEY), String.valueOf(CLEAN_MAX_DIRTY));
+        return cleared != null ? cleared : 0;
+    }
+    
+    /**
+     * 取出一批切换写入数据库，返回本批的切换数
+     * 写入的是Redis中的最终点赞状态，可能已包含取出之后或其他节点的切换，因此写入成功后按数据库实际变化的行数扣减点赞数差值；
+     * 没有变化的行中评论已被删除的，其差值不会再写入数据库，直接删除
+     * 写入失败时本批仍保留在正在写入的集合中，下次重新写入；重复写入时没有变化的行不会重复扣减
+     */
+    private int flushBatch() {
+        @SuppressWarnings("unchecked")
+        List<String> members = stringRedisTemplate.execute(DRAIN_SCRIPT,
+            Arrays.asList(DIRTY_KEY, FLUSHING_KEY), String.valueOf(FLUSH_BATCH_SIZE));
+        if (members == null || members.isEmpty()) {
+            return 0;
+        }
+        List<LikeKey> keys = new ArrayList<>(members.size());
+        for (String member : members) {
+            keys.add(LikeKey.fromMember(member));
+        }
+        
+        Map<Long, Integer> countDeltas = new HashMap<>();
+        Set<Long> unchangedCommentIds = new HashSet<>();
+        List<Boolean> likedStates = resolveLikedStates(keys);
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            List<LikeKey> inserts = new ArrayList<>();
+            List<LikeKey> deletes = new ArrayList<>();
+            for (int i = 0; i < keys.size(); i++) {
+                Boolean liked = likedStates.get(i);
+                if (liked != null) {
+                    (liked ? inserts : deletes).add(keys.get(i));
+                }
+            }
+            int[][] inserted = jdbcTemplate.batchUpdate(INSERT_SQL, inserts, inserts.size(), (ps, key) -> {
+                ps.setLong(1, key.userId);
+                ps.setLong(2, key.commentId);
+            });
+            int[][] deleted = jdbcTemplate.batchUpdate(DELETE_SQL, deletes, deletes.size(), (ps, key) -> {
+                ps.setLong(1, key.userId);
+                ps.setLong(2, key.commentId);
+            });
+            addCountDeltas(countDeltas, unchangedCommentIds, inserts, inserted, 1);
+            addCountDeltas(countDeltas, unchangedCommentIds, deletes, deleted, -1);
+            
+            List<Map.Entry<Long, Integer>> updates = new ArrayList<>(countDeltas.entrySet());
+            updates.removeIf(entry -> entry.getValue() == 0);
+            jdbcTemplate.batchUpdate(UPDATE_COUNT_SQL, updates, updates.size(), (ps, entry) -> {
+                ps.setInt(1, entry.getValue());
+                ps.setLong(2, entry.getKey());
+            });
+        });
+        
+        applyPendingLikeCounts(countDeltas, unchangedCommentIds);
+        return members.size();
+    }
+    
+    /**
+     * 一次管道请求读取每个用户集合是否存在及评论是否在集合中
+     * 集合不存在（已过期）时最终状态未知，返回null，该切换不写入，残留的差值由校正任务清除
+     */
+    @SuppressWarnings("unchecked")
+    private List<Boolean> resolveLikedStates(List<LikeKey> keys) {
+        List<Object> results = stringRedisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            public <K, V> Object execute(RedisOperations<K, V> operations) {
+                RedisOperations<String, String> ops = (RedisOperations<String, String>) operations;
+                for (LikeKey key : keys) {
+                    ops.hasKey(likedKey(key.userId));
+                    ops.opsForSet().isMember(likedKey(key.userId), String.valueOf(key.commentId));
+                }
+                return null;
+            }
+        });
+        List<Boolean> likedStates = new ArrayList<>(keys.size());
+        for (int i = 0; i < keys.size(); i++) {
+            boolean exists = Boolean.TRUE.equals(results.get(i * 2));
+            likedStates.add(exists ? Boolean.TRUE.equals(results.get(i * 2 + 1)) : null);
+        }
+        return likedStates;
+    }
+    
+    private static void addCountDeltas(Map<Long, Integer> countDeltas, Set<Long> unchangedCommentIds,
+                                       List<LikeKey> keys, int[][] affected, int sign) {
+        int index = 0;
+        for (int[] batch : affected) {
+            for (int rows : batch) {
+                if (rows > 0) {
+                    countDeltas.merge(keys.get(index).commentId, sign * rows, Integer::sum);
+                } else {
+                    unchangedCommentIds.add(keys.get(index).commentId);
+                }
+                index++;
+            }
+        }
+    }
+    
+    /**
+     * 按写入数据库的点赞数增量扣减共享的差值并确认本批已写入；删除已不存在的评论的差值
+     */
+    private void applyPendingLikeCounts(Map<Long, Integer> countDeltas, Set<Long> unchangedCommentIds) {
+        List<String> args = new ArrayList<>(countDeltas.size() * 2);
+        for (Map.Entry<Long, Integer> entry : countDeltas.entrySet()) {
+            if (entry.getValue() != 0) {
+                args.add(String.valueOf(entry.getKey()));
+                args.add(String.valueOf(entry.getValue()));
+            }
+        }
+        stringRedisTemplate.execute(COUNT_APPLIED_SCRIPT, Arrays.asList(PENDING_COUNTS_KEY, FLUSHING_KEY), args.toArray());
+        
+        if (!unchangedCommentIds.isEmpty()) {
+            Set<Long> deletedCommentIds = new HashSet<>(unchangedCommentIds);
+            deletedCommentIds.removeAll(commentRepository.findExistingIds(unchangedCommentIds));
+            if (!deletedCommentIds.isEmpty()) {
+                stringRedisTemplate.opsForHash().delete(PENDING_COUNTS_KEY,
+                    deletedCommentIds.stream().map(String::valueOf).toArray());
+            }
+        }
+    }
+    
+    /**
+     * 从数据库加载用户点赞过的全部评论，连同加载标记由脚本原子写入
+     * 集合只由加载创建，已存在时说明其他请求已加载并可能已有新的切换，不再用数据库快照覆盖
+     */
+    private void load(Long userId) {
+        List<Long> commentIds = commentLikeRepository.findCommentIdsByUserId(userId);
+        List<String> args = new ArrayList<>(commentIds.size() + 3);
+        args.add(String.valueOf(TimeUnit.HOURS.toSeconds(ttlHours)));
+        args.add("");
+        args.add(String.valueOf(LOADED_MARKER));
+        for (Long commentId : commentIds) {
+            args.add(String.valueOf(commentId));
+        }
+        stringRedisTemplate.execute(LOAD_SCRIPT, Collections.singletonList(likedKey(userId)), args.toArray());
+    }
+    
+    /**
+     * 一次管道请求判断加载标记和每条评论是否在集合中，结果第一项为加载标记
+     */
+    @SuppressWarnings("unchecked")
+    private List<Object> isMembers(String key, List<Long> commentIds) {
+        return longRedisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            public <K, V> Object execute(RedisOperations<K, V> operations) {
+                SetOperations<String, Long> setOps = ((RedisOperations<String, Long>) operations).opsForSet();
+                setOps.isMember(key, LOADED_MARKER);
+                for (Long commentId : commentIds) {
+                    setOps.isMember(key, commentId);
+                }
+                return null;
+            }
+        });
+    }
+    
+    private static String likedKey(Long userId) {
+        return LIKED_KEY_PREFIX + userId;
+    }
+    
+    /**
+     * 用户和评论，在待写入集合中编码为 用户ID:评论ID
+     */
+    @RequiredArgsConstructor
+    private static final class LikeKey {
+        
+        final Long userId;
+        final Long commentId;
+        
+        String toMember() {
+            return userId + ":" + commentId;
+        }
+        
+        static LikeKey fromMember(String member) {
+            int separator = member.indexOf(':');
+            return new LikeKey(Long.valueOf(member.substring(0, separator)), Long.valueOf(member.substring(separator + 1)));
+        }
+    }
+} 
\ No newline at end of file
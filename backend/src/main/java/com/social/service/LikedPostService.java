@@ -0,0 +1,188 @@
+package com.social.service;
+
+import com.social.entity.Post;
+import com.social.repository.PostLikeRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.SetOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 用户点赞过的动态
+ * 每个用户点赞过的动态ID保存在Redis集合 likes:user:{userId} 中，列表页一次管道请求判断整页动态的点赞状态，不查询likes表
+ * 集合包含占位成员0时表示已从数据库完整加载；点赞、取消点赞在事务提交后直接增删成员，未加载的集合在首次读取时从数据库补全
+ * 每次点赞变更先递增用户的变更版本号再增删成员，加载时读取快照期间版本号变化则放弃写入，避免旧快照恢复已取消的点赞
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class LikedPostService {
+    
+    private final RedisTemplate<String, Long> longRedisTemplate;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final PostLikeRepository postLikeRepository;
+    
+    private static final String LIKED_KEY_PREFIX = "likes:user:";
+    private static final String VERSION_KEY_PREFIX = "likes:user:version:";
+    
+    // 已完整加载的标记成员
+    private static final Long LOADED_MARKER = 0L;
+    
+    private static final RedisScript<Long> LOAD_SCRIPT =
+        RedisScript.of(new ClassPathResource("scripts/liked_set_load.lua"), Long.class);
+    
+    @Value("${likes.user-set-ttl-hours:168}")
+    private long ttlHours;
+    
+    /**
+     * 点赞事务提交后调用
+     */
+    public void onLiked(Long userId, Long postId) {
+        try {
+            recordChange(userId, postId, true);
+        } catch (Exception e) {
+            log.error("记录用户点赞状态失败: userId={}, postId={}", userId, postId, e);
+        }
+    }
+    
+    /**
+     * 取消点赞事务提交后调用
+     */
+    public void onUnliked(Long userId, Long postId) {
+        try {
+            recordChange(userId, postId, false);
+        } catch (Exception e) {
+            log.error("移除用户点赞状态失败: userId={}, postId={}", userId, postId, e);
+        }
+    }
+    
+    /**
+     * 为一组动态填充当前用户的点赞状态，currentUserId为空时不填充
+     */
+    public void fillLikedState(List<Post> posts, Long currentUserId) {
+        if (currentUserId == null || posts.isEmpty()) {
+            return;
+        }
+        List<Long> postIds = new ArrayList<>(posts.size());
+        for (Post post : posts) {
+            postIds.add(post.getId());
+        }
+        Set<Long> liked = getLikedPostIds(currentUserId, postIds);
+        for (Post post : posts) {
+            post.setIsLiked(liked.contains(post.getId()));
+        }
+    }
+    
+    /**
+     * 返回postIds中用户点赞过的动态ID；Redis不可用时回退到数据库
+     */
+    public Set<Long> getLikedPostIds(Long userId, List<Long> postIds) {
+        try {
+            String key = likedKey(userId);
+            List<Object> members = isMembers(key, LOADED_MARKER, postIds);
+            if (!Boolean.TRUE.equals(members.get(0))) {
+                load(userId);
+                members = isMembers(key, LOADED_MARKER, postIds);
+                if (!Boolean.TRUE.equals(members.get(0))) {
+                    // 加载期间有新的点赞变更，本次直接查询数据库，下次读取时重新加载
+                    return likedFromDatabase(userId, postIds);
+                }
+            }
+            Set<Long> liked = new HashSet<>();
+            for (int i = 0; i < postIds.size(); i++) {
+                if (Boolean.TRUE.equals(members.get(i + 1))) {
+                    liked.add(postIds.get(i));
+                }
+            }
+            return liked;
+        } catch (Exception e) {
+            log.error("读取用户点赞状态失败，回退到数据库: userId={}", userId, e);
+            return likedFromDatabase(userId, postIds);
+        }
+    }
+    
+    private Set<Long> likedFromDatabase(Long userId, List<Long> postIds) {
+        Set<Long> liked = new HashSet<>(postLikeRepository.findPostIdsByUserId(userId));
+        liked.retainAll(postIds);
+        return liked;
+    }
+    
+    /**
+     * 一次管道请求递增变更版本号并增删成员；版本号必须先于成员变更，正在进行的加载才能发现这次变更
+     */
+    @SuppressWarnings("unchecked")
+    private void recordChange(Long userId, Long postId, boolean liked) {
+        longRedisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            public <K, V> Object execute(RedisOperations<K, V> operations) {
+                RedisOperations<String, Long> ops = (RedisOperations<String, Long>) operations;
+                ops.opsForValue().increment(versionKey(userId));
+                ops.expire(versionKey(userId), ttlHours, TimeUnit.HOURS);
+                if (liked) {
+                    ops.opsForSet().add(likedKey(userId), postId);
+                    ops.expire(likedKey(userId), ttlHours, TimeUnit.HOURS);
+                } else {
+                    ops.opsForSet().remove(likedKey(userId), postId);
+                }
+                return null;
+            }
+        });
+    }
+    
+    /**
+     * 从数据库加载用户点赞过的全部动态，连同加载标记由脚本原子写入；
+     * 集合已被其他请求加载或读取快照期间有新的点赞变更时不写入
+     */
+    private void load(Long userId) {
+        String version = stringRedisTemplate.opsForValue().get(versionKey(userId));
+        List<Long> postIds = postLikeRepository.findPostIdsByUserId(userId);
+        List<String> args = new ArrayList<>(postIds.size() + 3);
+        args.add(String.valueOf(TimeUnit.HOURS.toSeconds(ttlHours)));
+        args.add(version != null ? version : "");
+        args.add(String.valueOf(LOADED_MARKER));
+        for (Long postId : postIds) {
+            args.add(String.valueOf(postId));
+        }
+        stringRedisTemplate.execute(LOAD_SCRIPT, Arrays.asList(likedKey(userId), versionKey(userId)), args.toArray());
+    }
+    
+    /**
+     * 一次管道请求判断加载标记和每个动态是否在集合中，结果第一项为加载标记
+     */
+    @SuppressWarnings("unchecked")
+    private List<Object> isMembers(String key, Long marker, List<Long> postIds) {
+        return longRedisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            public <K, V> Object execute(RedisOperations<K, V> operations) {
+                SetOperations<String, Long> setOps = ((RedisOperations<String, Long>) operations).opsForSet();
+                setOps.isMember(key, marker);
+                for (Long postId : postIds) {
+                    setOps.isMember(key, postId);
+                }
+                return null;
+            }
+        });
+    }
+    
+    private static String likedKey(Long userId) {
+        return LIKED_KEY_PREFIX + userId;
+    }
+    
+    private static String versionKey(Long userId) {
+        return VERSION_KEY_PREFIX + userId;
+    }
+} 
\ No newline at end of file
@@ -0,0 +1,231 @@
+package com.social.service;
+
+import com.social.repository.PostRepository;
+import com.social.util.LongDoubleRankTree;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 进程内排行榜引擎（ranking.engine=memory），不依赖Redis，读取排名无网络开销
+ * 每个排行榜是一棵以用户ID为成员的顺序统计树，排名、区间、分数查询均为 O(log N)
+ * 排行榜只保存在本节点，启动后及定时任务中由各节点分别从数据库全量重建；多节点部署时各节点只包含本节点的增量更新
+ */
+@Service
+@ConditionalOnProperty(name = "ranking.engine", havingValue = "memory")
+public class MemoryRankingEngine implements RankingEngine {
+    
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    
+    // 顺序与 RankingService.RANKING_TYPES 一致，全量重建时整体替换
+    private volatile LongDoubleRankTree[] boards = newBoards();
+    
+    // 正在重建的排行榜，重建期间的增量同时写入，替换时不丢失；由写锁保护
+    private LongDoubleRankTree[] rebuilding;
+    
+    @Override
+    public boolean isShared() {
+        return false;
+    }
+    
+    /**
+     * 不支持时间窗口排行榜，忽略按小时分组的增量
+     */
+    @Override
+    public long applyDeltas(long userId, long postCountDelta, long likesDelta, long commentsDelta,
+                            Map<LocalDateTime, long[]> hourlyDeltas) {
+        lock.writeLock().lock();
+        try {
+            LongDoubleRankTree[] current = boards;
+            long postCount = (long) current[0].increment(userId, postCountDelta);
+            long totalLikes = (long) current[1].increment(userId, likesDelta);
+            long totalComments = (long) current[2].increment(userId, commentsDelta);
+            long compositeScore = RankingService.compositeScore(postCount, totalLikes, totalComments);
+            current[3].put(userId, compositeScore);
+            if (rebuilding != null) {
+                putStats(rebuilding, userId,
+                    (long) rebuilding[0].increment(userId, postCountDelta),
+                    (long) rebuilding[1].increment(userId, likesDelta),
+                    (long) rebuilding[2].increment(userId, commentsDelta));
+            }
+            return compositeScore;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    @Override
+    public void setStats(long userId, long postCount, long totalLikes, long totalComments) {
+        lock.writeLock().lock();
+        try {
+            putStats(boards, userId, postCount, totalLikes, totalComments);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    @Override
+    public List<RankingService.RankingEntry> range(String rankingType, int start, int end) {
+        lock.readLock().lock();
+        try {
+            return readRange(boards[RankingService.boardIndex(rankingType)], start, end);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    @Override
+    public long size(String rankingType) {
+        lock.readLock().lock();
+        try {
+            return boards[RankingService.boardIndex(rankingType)].size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    @Override
+    public Long rank(String rankingType, long userId) {
+        lock.readLock().lock();
+        try {
+            int rank = boards[RankingService.boardIndex(rankingType)].rank(userId);
+            return rank >= 0 ? (long) rank : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    @Override
+    public Map<Long, Long> scores(String rankingType, List<Long> userIds) {
+        Map<Long, Long> scores = new HashMap<>();
+        lock.readLock().lock();
+        try {
+            LongDoubleRankTree board = boards[RankingService.boardIndex(rankingType)];
+            for (Long userId : userIds) {
+                scores.put(userId, (long) board.score(userId, 0));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return scores;
+    }
+    
+    @Override
+    public Map<String, Object> around(long userId, String rankingType, int k) {
+        lock.readLock().lock();
+        try {
+            LongDoubleRankTree[] current = boards;
+            long[] ranks = new long[current.length];
+            long[] scores = new long[current.length];
+            for (int i = 0; i < current.length; i++) {
+                ranks[i] = current[i].rank(userId);
+                scores[i] = (long) current[i].score(userId, 0);
+            }
+            
+            List<RankingService.RankingEntry> neighbours = new ArrayList<>();
+            long rank = ranks[RankingService.boardIndex(rankingType)];
+            if (rank >= 0) {
+                neighbours = readRange(current[RankingService.boardIndex(rankingType)],
+                    (int) Math.max(rank - k, 0), (int) rank + k);
+            }
+            return RankingService.aroundResult(ranks, scores, neighbours);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * 重建数据写入新的一组排行榜，提交时整体替换引用；本节点独享排行榜，不需要校验租约
+     * 重建期间的增量同时累加到新排行榜，快照写入的用户以快照为准
+     */
+    @Override
+    public RebuildTarget beginRebuild(String jobId) {
+        LongDoubleRankTree[] rebuilt = newBoards();
+        lock.writeLock().lock();
+        try {
+            rebuilding = rebuilt;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return new RebuildTarget() {
+            
+            @Override
+            public void write(List<PostRepository.UserPostStats> chunk) {
+                lock.writeLock().lock();
+                try {
+                    for (PostRepository.UserPostStats stats : chunk) {
+                        putStats(rebuilt, stats.getUserId(), stats.getPostCount(),
+                            stats.getTotalLikes(), stats.getTotalComments());
+                    }
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+            
+            @Override
+            public boolean commit(String leaseValue) {
+                lock.writeLock().lock();
+                try {
+                    boards = rebuilt;
+                    finishRebuild(rebuilt);
+                } finally {
+                    lock.writeLock().unlock();
+                }
+                return true;
+            }
+            
+            @Override
+            public void abort() {
+                // 未提交的数据不可见，丢弃即可
+                lock.writeLock().lock();
+                try {
+                    finishRebuild(rebuilt);
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+        };
+    }
+    
+    private void finishRebuild(LongDoubleRankTree[] rebuilt) {
+        if (rebuilding == rebuilt) {
+            rebuilding = null;
+        }
+    }
+    
+    private static void putStats(LongDoubleRankTree[] target, long userId,
+                                 long postCount, long totalLikes, long totalComments) {
+        target[0].put(userId, postCount);
+        target[1].put(userId, totalLikes);
+        target[2].put(userId, totalComments);
+        target[3].put(userId, RankingService.compositeScore(postCount, totalLikes, totalComments));
+    }
+    
+    /**
+     * 与ZREVRANGE语义一致，负数下标从末尾计算
+     */
+    private static List<RankingService.RankingEntry> readRange(LongDoubleRankTree board, int start, int end) {
+        List<RankingService.RankingEntry> entries = new ArrayList<>();
+        int size = board.size();
+        int first = Math.max(start < 0 ? size + start : start, 0);
+        int last = Math.min(end < 0 ? size + end : end, size - 1);
+        for (int rank = first; rank <= last; rank++) {
+            entries.add(new RankingService.RankingEntry(rank + 1, board.memberAt(rank), board.scoreAt(rank)));
+        }
+        return entries;
+    }
+    
+    private static LongDoubleRankTree[] newBoards() {
+        LongDoubleRankTree[] boards = new LongDoubleRankTree[RankingService.RANKING_TYPES.size()];
+        for (int i = 0; i < boards.length; i++) {
+            boards[i] = new LongDoubleRankTree();
+        }
+        return boards;
+    }
+} 
\ No newline at end of file
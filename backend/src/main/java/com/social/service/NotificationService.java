@@ -9,6 +9,7 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -20,13 +21,16 @@ public class NotificationService {
     private final SimpleWebSocketHandler webSocketHandler;
     private final MessageRepository messageRepository;
     private final UserRepository userRepository;
+    private final UserSummaryService userSummaryService;
     
     /**
      * 发送点赞通知
      */
     public void sendLikeNotification(Long fromUserId, Long toUserId, Long postId) {
         try {
-            User fromUser = userRepository.findById(fromUserId).orElse(null);
+            // 一次查询加载发送者和接收者
+            Map<Long, User> users = userSummaryService.getUsers(Arrays.asList(fromUserId, toUserId));
+            User fromUser = users.get(fromUserId);
             if (fromUser == null) return;
             
             String content = String.format("%s 点赞了你的动态", fromUser.getNickname() != null ? fromUser.getNickname() : fromUser.getUsername());
@@ -34,7 +38,7 @@ public class NotificationService {
             // 保存到数据库
             Message message = new Message();
             message.setFromUser(fromUser);
-            message.setToUser(userRepository.findById(toUserId).orElse(null));
+            message.setToUser(users.get(toUserId));
             message.setContent(content);
             message.setType(Message.MessageType.LIKE);
             message.setRelatedPostId(postId);
@@ -61,7 +65,9 @@ public class NotificationService {
      */
     public void sendCommentNotification(Long fromUserId, Long toUserId, Long postId, String comment) {
         try {
-            User fromUser = userRepository.findById(fromUserId).orElse(null);
+            // 一次查询加载发送者和接收者
+            Map<Long, User> users = userSummaryService.getUsers(Arrays.asList(fromUserId, toUserId));
+            User fromUser = users.get(fromUserId);
             if (fromUser == null) return;
             
             String content = String.format("%s 评论了你的动态: %s", 
@@ -71,7 +77,7 @@ public class NotificationService {
             // 保存到数据库
             Message message = new Message();
             message.setFromUser(fromUser);
-            message.setToUser(userRepository.findById(toUserId).orElse(null));
+            message.setToUser(users.get(toUserId));
             message.setContent(content);
             message.setType(Message.MessageType.COMMENT);
             message.setRelatedPostId(postId);
@@ -99,7 +105,9 @@ public class NotificationService {
      */
     public void sendFollowNotification(Long fromUserId, Long toUserId) {
         try {
-            User fromUser = userRepository.findById(fromUserId).orElse(null);
+            // 一次查询加载发送者和接收者
+            Map<Long, User> users = userSummaryService.getUsers(Arrays.asList(fromUserId, toUserId));
+            User fromUser = users.get(fromUserId);
             if (fromUser == null) return;
             
             String content = String.format("%s 关注了你", 
@@ -108,7 +116,7 @@ public class NotificationService {
             // 保存到数据库
             Message message = new Message();
             message.setFromUser(fromUser);
-            message.setToUser(userRepository.findById(toUserId).orElse(null));
+            message.setToUser(users.get(toUserId));
             message.setContent(content);
             message.setType(Message.MessageType.FOLLOW);
             messageRepository.save(message);
@@ -0,0 +1,261 @@
+package com.social.service;
+
+import com.social.entity.Post;
+import com.social.util.TransactionUtils;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * 动态点赞数、评论数、分享数的写缓冲
+ * 计数增量先累加到进程内按动态ID分组的LongAdder中（热门动态的并发累加分散在多个单元上，不争用同一把锁），
+ * 定时合并为每个动态一条UPDATE，以JDBC批量写入MySQL，避免热门动态的行锁竞争
+ * 读取动态时把尚未写入的增量合并到返回结果中；写入后使这些动态的详情缓存失效；停止前写入剩余增量
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class PostCounterBuffer {
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+    private final PostDetailCache postDetailCache;
+    
+    private static final String FLUSH_SQL = "UPDATE posts SET " +
+        "like_count = GREATEST(COALESCE(like_count, 0) + ?, 0), " +
+        "comment_count = GREATEST(COALESCE(comment_count, 0) + ?, 0), " +
+        "share_count = GREATEST(COALESCE(share_count, 0) + ?, 0) WHERE id = ?";
+    
+    // 每批写入的动态数量
+    private static final int BATCH_SIZE = 500;
+    
+    // 连续多少次写入时没有增量的动态从缓冲中移除
+    private static final int IDLE_FLUSHES_BEFORE_EVICT = 3;
+    
+    private final ConcurrentHashMap<Long, PostCounters> counters = new ConcurrentHashMap<>();
+    
+    // 上次移除的计数器，下次写入时再检查一次，收集移除前已取得引用的线程写入的增量
+    private volatile List<Map.Entry<Long, PostCounters>> evicted = new ArrayList<>();
+    
+    private final LongAdder receivedIncrements = new LongAdder();
+    private final LongAdder flushedRows = new LongAdder();
+    private final LongAdder failedFlushes = new LongAdder();
+    private volatile LocalDateTime lastFlushedAt;
+    
+    /**
+     * 当前事务提交后累加计数增量，事务回滚时不累加；没有事务时立即累加
+     */
+    public void addAfterCommit(Long postId, long likes, long comments, long shares) {
+        TransactionUtils.runAfterCommit(() -> add(postId, likes, comments, shares));
+    }
+    
+    /**
+     * 累加计数增量
+     */
+    public void add(Long postId, long likes, long comments, long shares) {
+        PostCounters postCounters = counters.computeIfAbsent(postId, id -> new PostCounters());
+        if (likes != 0) {
+            postCounters.likes.add(likes);
+        }
+        if (comments != 0) {
+            postCounters.comments.add(comments);
+        }
+        if (shares != 0) {
+            postCounters.shares.add(shares);
+        }
+        receivedIncrements.increment();
+    }
+    
+    /**
+     * 把尚未写入数据库的增量合并到动态的计数上，只用于只读查询返回的动态
+     */
+    public void merge(Collection<Post> posts) {
+        for (Post post : posts) {
+            PostCounters postCounters = counters.get(post.getId());
+            if (postCounters == null) {
+                continue;
+            }
+            long[] pending = postCounters.pending();
+            post.setLikeCount(mergeCount(post.getLikeCount(), pending[0]));
+            post.setCommentCount(mergeCount(post.getCommentCount(), pending[1]));
+            post.setShareCount(mergeCount(post.getShareCount(), pending[2]));
+        }
+    }
+    
+    /**
+     * 动态尚未写入数据库的点赞数、评论数、分享数增量
+     */
+    public long[] pending(Long postId) {
+        PostCounters postCounters = counters.get(postId);
+        if (postCounters == null) {
+            return new long[3];
+        }
+        return postCounters.pending();
+    }
+    
+    /**
+     * 把各动态累计的增量合并为一条UPDATE批量写入
+     * 取出的增量从计数器中减去（而不是清零，并发累加的增量留到下次写入），移入该动态的写入中增量；
+     * 读取时合并计数器和写入中的增量，事务提交后立即清除写入中的增量，避免数据库已包含的增量被重复合并；
+     * 写入失败时增量加回计数器
+     */
+    @Scheduled(fixedDelayString = "${posts.counter.flush-interval-ms:500}")
+    public synchronized void flush() {
+        List<PendingDelta> deltas = new ArrayList<>();
+        List<Map.Entry<Long, PostCounters>> previouslyEvicted = evicted;
+        evicted = new ArrayList<>();
+        for (Map.Entry<Long, PostCounters> entry : previouslyEvicted) {
+            collect(entry.getKey(), entry.getValue(), deltas);
+        }
+        for (Map.Entry<Long, PostCounters> entry : counters.entrySet()) {
+            PostCounters postCounters = entry.getValue();
+            if (collect(entry.getKey(), postCounters, deltas)) {
+                postCounters.idleFlushes = 0;
+            } else if (++postCounters.idleFlushes >= IDLE_FLUSHES_BEFORE_EVICT
+                && counters.remove(entry.getKey(), postCounters)) {
+                evicted.add(entry);
+            }
+        }
+        
+        for (int from = 0; from < deltas.size(); from += BATCH_SIZE) {
+            List<PendingDelta> batch = deltas.subList(from, Math.min(from + BATCH_SIZE, deltas.size()));
+            try {
+                writeBatch(batch);
+            } catch (Exception e) {
+                failedFlushes.increment();
+                log.error("写入动态计数失败，稍后重试: posts={}", batch.size(), e);
+                for (PendingDelta delta : batch) {
+                    delta.counters.likes.add(delta.likes);
+                    delta.counters.comments.add(delta.comments);
+                    delta.counters.shares.add(delta.shares);
+                    delta.counters.inFlight = null;
+                }
+                continue;
+            }
+            for (PendingDelta delta : batch) {
+                delta.counters.inFlight = null;
+            }
+            // 数据库中的计数已变化，使动态详情缓存失效
+            postDetailCache.invalidate(batch.stream().map(delta -> delta.postId).collect(Collectors.toList()));
+            flushedRows.add(batch.size());
+            lastFlushedAt = LocalDateTime.now();
+        }
+    }
+    
+    /**
+     * 停止前写入剩余的增量
+     */
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+    
+    /**
+     * 写缓冲统计：待写入的动态数、收到的增量次数、写入的行数及合并比例
+     */
+    public Map<String, Object> getStats() {
+        long increments = receivedIncrements.sum();
+        long rows = flushedRows.sum();
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("bufferedPosts", counters.size());
+        stats.put("receivedIncrements", increments);
+        stats.put("flushedRows", rows);
+        stats.put("failedFlushes", failedFlushes.sum());
+        stats.put("coalescingRatio", rows > 0 ? (double) increments / rows : null);
+        stats.put("lastFlushedAt", lastFlushedAt);
+        return stats;
+    }
+    
+    /**
+     * 取出计数器中的增量移入写入中增量，有增量时返回true
+     * 先记录写入中增量再从计数器中减去，期间的读取只会多计而不会漏计
+     */
+    private static boolean collect(Long postId, PostCounters postCounters, List<PendingDelta> deltas) {
+        long likes = postCounters.likes.sum();
+        long comments = postCounters.comments.sum();
+        long shares = postCounters.shares.sum();
+        if (likes == 0 && comments == 0 && shares == 0) {
+            return false;
+        }
+        PendingDelta delta = new PendingDelta(postId, postCounters, likes, comments, shares);
+        postCounters.inFlight = delta;
+        postCounters.likes.add(-likes);
+        postCounters.comments.add(-comments);
+        postCounters.shares.add(-shares);
+        deltas.add(delta);
+        return true;
+    }
+    
+    private void writeBatch(List<PendingDelta> batch) {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+            jdbcTemplate.batchUpdate(FLUSH_SQL, batch, batch.size(), (ps, delta) -> {
+                ps.setLong(1, delta.likes);
+                ps.setLong(2, delta.comments);
+                ps.setLong(3, delta.shares);
+                ps.setLong(4, delta.postId);
+            }));
+    }
+    
+    private static Integer mergeCount(Integer count, long pending) {
+        return (int) Math.max((count != null ? count : 0) + pending, 0);
+    }
+    
+    /**
+     * 一个动态的待写入增量
+     */
+    private static final class PostCounters {
+        
+        final LongAdder likes = new LongAdder();
+        final LongAdder comments = new LongAdder();
+        final LongAdder shares = new LongAdder();
+        
+        // 正在写入数据库的增量，事务提交或写入失败后清除
+        volatile PendingDelta inFlight;
+        
+        // 只由写入线程访问
+        int idleFlushes;
+        
+        /**
+         * 尚未提交到数据库的增量：计数器中的增量加上写入中的增量
+         */
+        long[] pending() {
+            // 先读计数器再读写入中增量，与collect中先记录写入中增量再扣减计数器的顺序相反
+            long[] pending = {likes.sum(), comments.sum(), shares.sum()};
+            PendingDelta flushing = inFlight;
+            if (flushing != null) {
+                pending[0] += flushing.likes;
+                pending[1] += flushing.comments;
+                pending[2] += flushing.shares;
+            }
+            return pending;
+        }
+    }
+    
+    /**
+     * 一次写入中一个动态的增量
+     */
+    @RequiredArgsConstructor
+    private static final class PendingDelta {
+        
+        final Long postId;
+        final PostCounters counters;
+        final long likes;
+        final long comments;
+        final long shares;
+    }
+} 
\ No newline at end of file
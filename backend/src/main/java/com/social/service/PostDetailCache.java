@@ -0,0 +1,156 @@
+package com.social.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.social.entity.Post;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 动态详情缓存
+ * 两级缓存：进程内Caffeine（L1）和Redis（L2），缓存键都包含动态的版本号，动态变更时递增Redis中的版本号使所有节点的旧缓存失效，
+ * 旧版本的缓存不再被读取，按过期时间自然淘汰
+ * 同一节点上同一版本的缓存未命中只有一个线程加载（其余线程等待结果），热门动态失效后不会同时产生大量数据库查询
+ * 缓存的是数据库中的动态，不包含写缓冲中尚未写入的计数增量和用户信息，由调用方在读取后合并
+ */
+@Slf4j
+@Service
+public class PostDetailCache {
+    
+    private final StringRedisTemplate stringRedisTemplate;
+    private final ObjectMapper objectMapper;
+    
+    private static final String VERSION_KEY_PREFIX = "posts:detail:version:";
+    private static final String DETAIL_KEY_PREFIX = "posts:detail:";
+    
+    // 键为 动态ID:版本号，值为动态的JSON，每次读取反序列化出新的对象，调用方可以修改
+    private final Cache<String, String> localCache;
+    
+    private final long redisTtlSeconds;
+    
+    public PostDetailCache(StringRedisTemplate stringRedisTemplate, ObjectMapper objectMapper,
+                           @Value("${posts.detail-cache.maximum-size:10000}") long maximumSize,
+                           @Value("${posts.detail-cache.local-ttl-seconds:60}") long localTtlSeconds,
+                           @Value("${posts.detail-cache.redis-ttl-seconds:600}") long redisTtlSeconds) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.objectMapper = objectMapper;
+        this.redisTtlSeconds = redisTtlSeconds;
+        this.localCache = Caffeine.newBuilder()
+            .maximumSize(maximumSize)
+            .expireAfterWrite(localTtlSeconds, TimeUnit.SECONDS)
+            .recordStats()
+            .build();
+    }
+    
+    /**
+     * 读取动态详情，依次查询本节点缓存、Redis缓存，都未命中时通过loader从数据库加载；动态不存在时返回null（不缓存）
+     * Redis不可用时直接从数据库加载
+     */
+    public Post get(Long postId, Supplier<Post> loader) {
+        String version;
+        try {
+            version = stringRedisTemplate.opsForValue().get(VERSION_KEY_PREFIX + postId);
+        } catch (Exception e) {
+            log.error("读取动态详情缓存版本失败: postId={}", postId, e);
+            return loader.get();
+        }
+        String detailKey = DETAIL_KEY_PREFIX + postId + ":v" + (version != null ? version : "0");
+        
+        String json = localCache.get(detailKey, key -> load(key, loader));
+        if (json == null) {
+            return null;
+        }
+        try {
+            return objectMapper.readValue(json, Post.class);
+        } catch (Exception e) {
+            log.error("解析动态详情缓存失败: postId={}", postId, e);
+            localCache.invalidate(detailKey);
+            return loader.get();
+        }
+    }
+    
+    /**
+     * 动态变更后递增版本号，所有节点的旧版本缓存随即失效
+     * 版本号的过期时间是Redis缓存的两倍，版本号过期重置时旧版本的Redis缓存已经过期
+     */
+    @SuppressWarnings("unchecked")
+    public void invalidate(Collection<Long> postIds) {
+        if (postIds.isEmpty()) {
+            return;
+        }
+        try {
+            stringRedisTemplate.executePipelined(new SessionCallback<Object>() {
+                @Override
+                public <K, V> Object execute(RedisOperations<K, V> operations) {
+                    RedisOperations<String, String> ops = (RedisOperations<String, String>) operations;
+                    for (Long postId : postIds) {
+                        String versionKey = VERSION_KEY_PREFIX + postId;
+                        ops.opsForValue().increment(versionKey);
+                        ops.expire(versionKey, redisTtlSeconds * 2, TimeUnit.SECONDS);
+                    }
+                    return null;
+                }
+            });
+        } catch (Exception e) {
+            log.error("更新动态详情缓存版本失败: postIds={}", postIds, e);
+        }
+    }
+    
+    /**
+     * 本节点缓存统计
+     */
+    public Map<String, Object> getCacheStats() {
+        CacheStats stats = localCache.stats();
+        Map<String, Object> result = new HashMap<>();
+        result.put("hitCount", stats.hitCount());
+        result.put("missCount", stats.missCount());
+        result.put("hitRate", stats.hitRate());
+        result.put("evictionCount", stats.evictionCount());
+        result.put("loadCount", stats.loadCount());
+        result.put("estimatedSize", localCache.estimatedSize());
+        return result;
+    }
+    
+    /**
+     * 本节点缓存未命中时读取Redis缓存，仍未命中时查询数据库并写入Redis
+     */
+    private String load(String detailKey, Supplier<Post> loader) {
+        try {
+            String cached = stringRedisTemplate.opsForValue().get(detailKey);
+            if (cached != null) {
+                return cached;
+            }
+        } catch (Exception e) {
+            log.error("读取动态详情缓存失败: key={}", detailKey, e);
+        }
+        
+        Post post = loader.get();
+        if (post == null) {
+            return null;
+        }
+        String json;
+        try {
+            json = objectMapper.writeValueAsString(post);
+        } catch (Exception e) {
+            throw new RuntimeException("动态详情序列化失败", e);
+        }
+        try {
+            stringRedisTemplate.opsForValue().set(detailKey, json, redisTtlSeconds, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            log.error("写入动态详情缓存失败: key={}", detailKey, e);
+        }
+        return json;
+    }
+} 
\ No newline at end of file
@@ -4,18 +4,28 @@ import com.social.entity.Post;
 import com.social.entity.User;
 import com.social.repository.CommentLikeRepository;
 import com.social.repository.CommentRepository;
+import com.social.repository.PostLikeRepository;
 import com.social.repository.PostRepository;
 import com.social.repository.UserRepository;
+import com.social.util.CursorPage;
+import com.social.util.KeysetCursor;
+import com.social.util.TransactionUtils;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -25,7 +35,14 @@ public class PostService {
     private final UserRepository userRepository;
     private final CommentRepository commentRepository;
     private final CommentLikeRepository commentLikeRepository;
+    private final PostLikeRepository postLikeRepository;
     private final RankingService rankingService;
+    private final HotPostService hotPostService;
+    private final UserSummaryService userSummaryService;
+    private final TimelineService timelineService;
+    private final LikedPostService likedPostService;
+    private final PostCounterBuffer postCounterBuffer;
+    private final PostDetailCache postDetailCache;
     
     /**
      * 创建动态
@@ -48,9 +65,12 @@ public class PostService {
         user.setPostCount(user.getPostCount() + 1);
         userRepository.save(user);
         
-        // 实时更新排行榜
-        rankingService.updateUserPostCount(userId);
-        rankingService.updateUserCompositeScore(userId);
+        // 增量更新排行榜
+        rankingService.incrementUserPostCount(userId, 1);
+        
+        // 新动态进入热门动态，并推送到粉丝的首页时间线
+        hotPostService.onPostChanged(savedPost);
+        timelineService.onPostCreated(savedPost);
         
         return savedPost;
     }
@@ -72,7 +92,22 @@ public class PostService {
             }
         }
         
+        // 计数包含写缓冲中尚未写入数据库的增量
         Long postAuthorId = post.getUserId();
+        long[] pending = postCounterBuffer.pending(postId);
+        long postLikes = Math.max((post.getLikeCount() != null ? post.getLikeCount() : 0) + pending[0], 0);
+        long postComments = Math.max((post.getCommentCount() != null ? post.getCommentCount() : 0) + pending[1], 0);
+        
+        // 时间窗口排行榜只扣减动态、点赞和评论各自所在的小时分桶，需在删除前统计
+        Map<LocalDateTime, long[]> hourlyDeltas = new HashMap<>();
+        LocalDateTime windowStart = RankingService.oldestWindowHour();
+        RankingService.addHourlyDelta(hourlyDeltas, post.getCreatedAt(), -1, 0, 0);
+        for (PostRepository.HourlyCount likes : postLikeRepository.countByPostIdPerHour(postId, windowStart)) {
+            RankingService.addHourlyDelta(hourlyDeltas, likes.getFirstAt(), 0, -likes.getCount(), 0);
+        }
+        for (PostRepository.HourlyCount comments : commentRepository.countTopLevelByPostIdPerHour(postId, windowStart)) {
+            RankingService.addHourlyDelta(hourlyDeltas, comments.getFirstAt(), 0, 0, -comments.getCount());
+        }
         
         // 1. 删除动态的所有评论点赞记录
         List<Long> commentIds = commentRepository.findCommentIdsByPostId(postId);
@@ -83,9 +118,8 @@ public class PostService {
         // 2. 删除动态的所有评论
         commentRepository.deleteByPostId(postId);
         
-        // 3. 删除动态的点赞记录（如果有likes表的话）
-        // 这里假设有PostLikeRepository，如果没有可以跳过
-        // postLikeRepository.deleteByPostId(postId);
+        // 3. 删除动态的点赞记录
+        postLikeRepository.deleteByPostId(postId);
         
         // 4. 删除动态本身
         postRepository.deleteById(postId);
@@ -97,47 +131,59 @@ public class PostService {
             userRepository.save(postAuthor);
         }
         
-        // 实时更新排行榜
-        rankingService.updateUserPostCount(postAuthorId);
-        rankingService.updateUserPostLikes(postAuthorId);
-        rankingService.updateUserPostComments(postAuthorId);
-        rankingService.updateUserCompositeScore(postAuthorId);
+        // 增量更新排行榜：扣除该动态贡献的动态数、点赞数和评论数
+        rankingService.revertUserActivity(postAuthorId, -1, -postLikes, -postComments, hourlyDeltas);
+        
+        hotPostService.onPostDeleted(postId);
+        TransactionUtils.runAfterCommit(() -> postDetailCache.invalidate(Collections.singletonList(postId)));
     }
     
     /**
      * 点赞动态
+     * 点赞记录依赖unique_like唯一索引插入，重复点赞不会重复计数；点赞数增量在事务提交后进入写缓冲，合并后批量写入动态
+     *
+     * @return 本次是否新增了点赞（已点赞时返回false）
      */
     @Transactional
-    public void likePost(Long postId, Long userId) {
+    public boolean likePost(Long postId, Long userId) {
         Post post = postRepository.findById(postId)
                 .orElseThrow(() -> new RuntimeException("动态不存在"));
         
-        // 增加点赞数
-        post.setLikeCount(post.getLikeCount() + 1);
-        postRepository.save(post);
+        if (postLikeRepository.insertIgnore(userId, postId) == 0) {
+            return false;
+        }
+        // 先登记计数增量，提交后计算热度时已包含本次点赞
+        postCounterBuffer.addAfterCommit(postId, 1, 0, 0);
         
-        // 实时更新排行榜
-        rankingService.updateUserPostLikes(post.getUserId());
-        rankingService.updateUserCompositeScore(post.getUserId());
+        // 增量更新排行榜和动态热度
+        rankingService.incrementUserPostLikes(post.getUserId(), 1);
+        hotPostService.onPostChanged(post);
+        TransactionUtils.runAfterCommit(() -> likedPostService.onLiked(userId, postId));
+        return true;
     }
     
     /**
-     * 取消点赞动态
+     * 取消点赞动态，只有实际删除了点赞记录时才扣减点赞数
+     *
+     * @return 本次是否取消了点赞（未点赞时返回false）
      */
     @Transactional
-    public void unlikePost(Long postId, Long userId) {
+    public boolean unlikePost(Long postId, Long userId) {
         Post post = postRepository.findById(postId)
                 .orElseThrow(() -> new RuntimeException("动态不存在"));
         
-        // 减少点赞数
-        if (post.getLikeCount() > 0) {
-            post.setLikeCount(post.getLikeCount() - 1);
-            postRepository.save(post);
-            
-            // 实时更新排行榜
-            rankingService.updateUserPostLikes(post.getUserId());
-            rankingService.updateUserCompositeScore(post.getUserId());
+        // 时间窗口排行榜扣减该点赞所在的小时分桶
+        LocalDateTime likedAt = postLikeRepository.findCreatedAt(userId, postId).orElse(null);
+        if (postLikeRepository.deleteByUserIdAndPostId(userId, postId) == 0) {
+            return false;
         }
+        postCounterBuffer.addAfterCommit(postId, -1, 0, 0);
+        
+        // 增量更新排行榜和动态热度
+        rankingService.revertUserActivity(post.getUserId(), 0, -1, 0, likedAt);
+        hotPostService.onPostChanged(post);
+        TransactionUtils.runAfterCommit(() -> likedPostService.onUnliked(userId, postId));
+        return true;
     }
     
     /**
@@ -149,12 +195,11 @@ public class PostService {
                 .orElseThrow(() -> new RuntimeException("动态不存在"));
         
         // 增加评论数
-        post.setCommentCount(post.getCommentCount() + 1);
-        postRepository.save(post);
+        postCounterBuffer.addAfterCommit(postId, 0, 1, 0);
         
-        // 实时更新排行榜
-        rankingService.updateUserPostComments(post.getUserId());
-        rankingService.updateUserCompositeScore(post.getUserId());
+        // 增量更新排行榜和动态热度
+        rankingService.incrementUserPostComments(post.getUserId(), 1);
+        hotPostService.onPostChanged(post);
     }
     
     /**
@@ -165,14 +210,14 @@ public class PostService {
         Post post = postRepository.findById(postId)
                 .orElseThrow(() -> new RuntimeException("动态不存在"));
         
-        // 减少评论数
-        if (post.getCommentCount() > 0) {
-            post.setCommentCount(post.getCommentCount() - 1);
-            postRepository.save(post);
+        // 减少评论数（包含写缓冲中尚未写入的增量）
+        int commentCount = post.getCommentCount() != null ? post.getCommentCount() : 0;
+        if (commentCount + postCounterBuffer.pending(postId)[1] > 0) {
+            postCounterBuffer.addAfterCommit(postId, 0, -1, 0);
             
-            // 实时更新排行榜
-            rankingService.updateUserPostComments(post.getUserId());
-            rankingService.updateUserCompositeScore(post.getUserId());
+            // 增量更新排行榜和动态热度
+            rankingService.incrementUserPostComments(post.getUserId(), -1);
+            hotPostService.onPostChanged(post);
         }
     }
     
@@ -183,12 +228,113 @@ public class PostService {
         Pageable pageable = PageRequest.of(page, size);
         Page<Post> posts = postRepository.findAllByOrderByCreatedAtDesc(pageable);
         
-        // 为每个动态添加用户信息
-        posts.getContent().forEach(this::enrichPost);
+        // 批量添加用户信息
+        enrichPosts(posts.getContent());
         
         return posts;
     }
     
+    /**
+     * 游标分页获取动态列表，按 (创建时间, ID) 键集定位，不统计总数，任意深度的翻页开销相同
+     *
+     * @param cursor 上一页返回的nextCursor，为空时获取第一页
+     */
+    public CursorPage<Post> getPostsByCursor(String cursor, int size) {
+        Pageable limit = PageRequest.of(0, size + 1);
+        List<Post> posts;
+        if (cursor == null || cursor.isEmpty()) {
+            posts = postRepository.findByOrderByCreatedAtDescIdDesc(limit);
+        } else {
+            KeysetCursor position = KeysetCursor.decode(cursor);
+            posts = postRepository.findBeforeCursor(position.getCreatedAt(), position.getId(), limit);
+        }
+        return toCursorPage(posts, size);
+    }
+    
+    /**
+     * 游标分页获取用户的动态列表
+     */
+    public CursorPage<Post> getUserPostsByCursor(Long userId, String cursor, int size) {
+        Pageable limit = PageRequest.of(0, size + 1);
+        List<Post> posts;
+        if (cursor == null || cursor.isEmpty()) {
+            posts = postRepository.findByUserIdOrderByCreatedAtDescIdDesc(userId, limit);
+        } else {
+            KeysetCursor position = KeysetCursor.decode(cursor);
+            posts = postRepository.findByUserIdBeforeCursor(userId, position.getCreatedAt(), position.getId(), limit);
+        }
+        return toCursorPage(posts, size);
+    }
+    
+    /**
+     * 获取用户的首页时间线（自己和关注用户的动态，按发布顺序倒序）
+     *
+     * @param cursor 上一页返回的nextCursor（上一页最后一条动态的ID），为空时获取第一页
+     */
+    public CursorPage<Post> getHomeTimeline(Long userId, String cursor, int size) {
+        long beforeId = Long.MAX_VALUE;
+        if (cursor != null && !cursor.isEmpty()) {
+            try {
+                beforeId = Long.parseLong(cursor);
+            } catch (NumberFormatException e) {
+                throw new RuntimeException("无效的分页游标");
+            }
+        }
+        List<Long> postIds = timelineService.getTimelinePostIds(userId, beforeId, size + 1);
+        boolean hasNext = postIds.size() > size;
+        if (hasNext) {
+            postIds = postIds.subList(0, size);
+        }
+        
+        Map<Long, Post> postsById = postRepository.findAllById(postIds).stream()
+                .collect(Collectors.toMap(Post::getId, Function.identity()));
+        List<Post> posts = new ArrayList<>();
+        List<Long> missingIds = new ArrayList<>();
+        for (Long postId : postIds) {
+            Post post = postsById.get(postId);
+            if (post != null) {
+                posts.add(post);
+            } else {
+                missingIds.add(postId);
+            }
+        }
+        // 已删除的动态
+        timelineService.removePosts(userId, missingIds);
+        
+        enrichPosts(posts);
+        
+        String nextCursor = hasNext ? String.valueOf(postIds.get(postIds.size() - 1)) : null;
+        return new CursorPage<>(posts, nextCursor);
+    }
+    
+    /**
+     * 获取热门动态列表，顺序和总数只读取热门动态有序集合，按主键批量加载当前页的动态
+     */
+    public Page<Post> getHotPosts(int page, int size) {
+        Pageable pageable = PageRequest.of(page, size);
+        List<Long> postIds = hotPostService.getHotPostIds(pageable.getOffset(), pageable.getOffset() + size - 1);
+        long total = hotPostService.getHotPostCount();
+        
+        Map<Long, Post> postsById = postRepository.findAllById(postIds).stream()
+                .collect(Collectors.toMap(Post::getId, Function.identity()));
+        List<Post> posts = new ArrayList<>();
+        List<Long> missingIds = new ArrayList<>();
+        for (Long postId : postIds) {
+            Post post = postsById.get(postId);
+            if (post != null) {
+                posts.add(post);
+            } else {
+                missingIds.add(postId);
+            }
+        }
+        // 已删除但未能及时移除的动态
+        hotPostService.removePosts(missingIds);
+        
+        enrichPosts(posts);
+        
+        return new PageImpl<>(posts, pageable, total);
+    }
+    
     /**
      * 获取用户的动态列表
      */
@@ -197,48 +343,45 @@ public class PostService {
         Page<Post> posts = postRepository.findByUserIdOrderByCreatedAtDesc(userId, pageable);
         
         // 为每个动态添加用户信息
-        User user = userRepository.findById(userId).orElse(null);
-        if (user != null) {
-            Map<String, Object> userInfo = new HashMap<>();
-            userInfo.put("id", user.getId());
-            userInfo.put("username", user.getUsername());
-            userInfo.put("nickname", user.getNickname());
-            userInfo.put("avatar", user.getAvatar());
-            userInfo.put("bio", user.getBio());
-            
-            posts.getContent().forEach(post -> {
-                post.setUserInfo(userInfo);
-            });
-        }
+        enrichPosts(posts.getContent());
         
         return posts;
     }
     
     /**
-     * 获取单个动态详情
+     * 获取单个动态详情，动态本身读取自动态详情缓存，计数合并写缓冲中的增量
      */
     public Post getPost(Long postId) {
-        Post post = postRepository.findById(postId)
-                .orElseThrow(() -> new RuntimeException("动态不存在"));
+        Post post = postDetailCache.get(postId, () -> postRepository.findById(postId).orElse(null));
+        if (post == null) {
+            throw new RuntimeException("动态不存在");
+        }
         
-        enrichPost(post);
+        enrichPosts(Collections.singletonList(post));
         
         return post;
     }
     
     /**
-     * 丰富动态信息（添加用户信息）
+     * 多查询的一条用于判断是否有下一页，下一页游标指向本页最后一条动态
      */
-    private void enrichPost(Post post) {
-        User user = userRepository.findById(post.getUserId()).orElse(null);
-        if (user != null) {
-            Map<String, Object> userInfo = new HashMap<>();
-            userInfo.put("id", user.getId());
-            userInfo.put("username", user.getUsername());
-            userInfo.put("nickname", user.getNickname());
-            userInfo.put("avatar", user.getAvatar());
-            userInfo.put("bio", user.getBio());
-            post.setUserInfo(userInfo);
+    private CursorPage<Post> toCursorPage(List<Post> posts, int size) {
+        String nextCursor = null;
+        if (posts.size() > size) {
+            posts = new ArrayList<>(posts.subList(0, size));
+            Post last = posts.get(size - 1);
+            nextCursor = new KeysetCursor(last.getCreatedAt(), last.getId()).encode();
         }
+        enrichPosts(posts);
+        return new CursorPage<>(posts, nextCursor);
+    }
+    
+    /**
+     * 丰富动态信息（添加用户信息），一次查询加载所有作者；计数合并写缓冲中尚未写入数据库的增量
+     * 只用于只读查询返回的动态，不能在写事务中调用，否则合并后的计数会随脏检查写回数据库
+     */
+    private void enrichPosts(List<Post> posts) {
+        postCounterBuffer.merge(posts);
+        userSummaryService.attachSummaries(posts, Post::getUserId, Post::setUserInfo);
     }
 } 
\ No newline at end of file
@@ -0,0 +1,100 @@
+package com.social.service;
+
+import com.social.repository.PostRepository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 排行榜存储引擎
+ * 维护动态数、点赞数、评论数、综合评分四个排行榜；排行榜类型为 post_count / post_likes / post_comments / composite_score，
+ * 未知类型按综合评分处理。通过配置 ranking.engine 选择实现：redis（默认，多节点共享）或 memory（进程内）
+ */
+public interface RankingEngine {
+    
+    /**
+     * 排行榜数据是否在多个节点间共享；进程内实现返回false，此时每个节点各自重建排行榜
+     */
+    boolean isShared();
+    
+    /**
+     * 按增量更新用户的三项数据并重算综合评分
+     *
+     * @param hourlyDeltas 时间窗口排行榜的增量：活动所在的小时 -> 动态数/点赞数/评论数增量；
+     *                     负增量撤销的是该小时内的活动，只扣减已包含该用户的分桶且不低于0。不支持时间窗口的引擎忽略
+     * @return 更新后的综合评分
+     */
+    long applyDeltas(long userId, long postCountDelta, long likesDelta, long commentsDelta,
+                     Map<LocalDateTime, long[]> hourlyDeltas);
+    
+    /**
+     * 直接设置用户的三项数据及综合评分
+     */
+    void setStats(long userId, long postCount, long totalLikes, long totalComments);
+    
+    /**
+     * 按排名顺序获取排行榜区间（start、end从0开始，均包含）
+     */
+    List<RankingService.RankingEntry> range(String rankingType, int start, int end);
+    
+    /**
+     * 排行榜总人数
+     */
+    long size(String rankingType);
+    
+    /**
+     * 用户排名（从0开始），不在榜上时返回null
+     */
+    Long rank(String rankingType, long userId);
+    
+    /**
+     * 批量获取用户分数，不在榜上的用户分数为0
+     */
+    Map<Long, Long> scores(String rankingType, List<Long> userIds);
+    
+    /**
+     * 获取用户在全部排行榜上的排名和分数（boards），以及指定排行榜上前后k名的邻居（neighbours）
+     */
+    Map<String, Object> around(long userId, String rankingType, int k);
+    
+    /**
+     * 获取时间窗口排行榜区间
+     */
+    default List<RankingService.RankingEntry> windowRange(String window, String rankingType, int start, int end) {
+        throw new RuntimeException("当前排行榜引擎不支持时间窗口排行榜");
+    }
+    
+    /**
+     * 时间窗口排行榜总人数
+     */
+    default long windowSize(String window, String rankingType) {
+        throw new RuntimeException("当前排行榜引擎不支持时间窗口排行榜");
+    }
+    
+    /**
+     * 开始一次全量重建，重建数据写入独立的副本，提交时整体替换线上排行榜
+     * 从开始到提交或放弃期间，applyDeltas的增量同时累加到副本；已有重建在进行时抛出异常
+     */
+    RebuildTarget beginRebuild(String jobId);
+    
+    /**
+     * 全量重建的写入目标，write可被多个分片线程并发调用
+     */
+    interface RebuildTarget {
+        
+        void write(List<PostRepository.UserPostStats> chunk);
+        
+        /**
+         * 替换线上排行榜；leaseValue不为空时校验租约仍有效
+         *
+         * @return 租约已失效时返回false
+         */
+        boolean commit(String leaseValue);
+        
+        /**
+         * 放弃本次重建，清理已写入的数据
+         */
+        void abort();
+    }
+} 
\ No newline at end of file
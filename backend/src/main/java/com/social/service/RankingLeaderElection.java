@@ -0,0 +1,168 @@
+package com.social.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.net.InetAddress;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 基于Redis租约的排行榜重建选主
+ * 多实例部署时只有持有租约的节点执行定时重建；持有者定期续约，宕机后租约过期由其他节点接管
+ * 每次获取租约都会生成单调递增的fencing token，重建结果替换线上排行榜前校验租约仍属于本节点
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "ranking.engine", havingValue = "redis", matchIfMissing = true)
+public class RankingLeaderElection {
+    
+    private final StringRedisTemplate stringRedisTemplate;
+    
+    static final String LEASE_KEY = "ranking:rebuild:lease";
+    private static final String FENCING_TOKEN_KEY = "ranking:rebuild:fencing_token";
+    
+    private static final RedisScript<Long> ACQUIRE_SCRIPT =
+        RedisScript.of(new ClassPathResource("scripts/lease_acquire.lua"), Long.class);
+    private static final RedisScript<Long> RENEW_SCRIPT =
+        RedisScript.of(new ClassPathResource("scripts/lease_renew.lua"), Long.class);
+    private static final RedisScript<Long> RELEASE_SCRIPT =
+        RedisScript.of(new ClassPathResource("scripts/lease_release.lua"), Long.class);
+    
+    @Value("${ranking.lease.ttl-ms:30000}")
+    private long leaseTtlMs;
+    
+    private final String nodeId = resolveNodeId();
+    
+    // 当前持有的租约值（节点ID:token），未持有时为null
+    private volatile String leaseValue;
+    private volatile long fencingToken;
+    // 本地判定的租约截止时间（System.nanoTime），不依赖各节点时钟一致
+    private volatile long leaseDeadlineNanos;
+    private volatile LocalDateTime lastRenewedAt;
+    
+    private final AtomicLong acquisitions = new AtomicLong();
+    private final AtomicLong renewals = new AtomicLong();
+    private final AtomicLong losses = new AtomicLong();
+    
+    /**
+     * 租约心跳：已持有则续约，否则尝试获取
+     */
+    @Scheduled(fixedDelayString = "${ranking.lease.renew-interval-ms:10000}")
+    public void heartbeat() {
+        try {
+            if (leaseValue != null) {
+                renew();
+            } else {
+                tryAcquire();
+            }
+        } catch (Exception e) {
+            log.error("排行榜租约心跳失败: nodeId={}", nodeId, e);
+        }
+    }
+    
+    /**
+     * 当前节点是否持有有效租约
+     */
+    public boolean isLeader() {
+        return leaseValue != null && System.nanoTime() < leaseDeadlineNanos;
+    }
+    
+    /**
+     * 当前持有的租约值，用于替换排行榜时校验；未持有时返回null
+     */
+    public String getLeaseValue() {
+        return isLeader() ? leaseValue : null;
+    }
+    
+    /**
+     * 租约状态及统计
+     */
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new HashMap<>();
+        status.put("nodeId", nodeId);
+        status.put("leader", isLeader());
+        status.put("fencingToken", isLeader() ? fencingToken : null);
+        status.put("lastRenewedAt", lastRenewedAt);
+        status.put("acquisitions", acquisitions.get());
+        status.put("renewals", renewals.get());
+        status.put("losses", losses.get());
+        try {
+            status.put("holder", stringRedisTemplate.opsForValue().get(LEASE_KEY));
+            status.put("holderTtlMs", stringRedisTemplate.getExpire(LEASE_KEY, TimeUnit.MILLISECONDS));
+        } catch (Exception e) {
+            log.error("获取排行榜租约持有者失败", e);
+        }
+        return status;
+    }
+    
+    @PreDestroy
+    public void release() {
+        String value = leaseValue;
+        if (value == null) {
+            return;
+        }
+        try {
+            stringRedisTemplate.execute(RELEASE_SCRIPT, Collections.singletonList(LEASE_KEY), value);
+            log.info("释放排行榜租约: {}", value);
+        } catch (Exception e) {
+            log.error("释放排行榜租约失败: {}", value, e);
+        } finally {
+            leaseValue = null;
+        }
+    }
+    
+    private void tryAcquire() {
+        long startNanos = System.nanoTime();
+        Long token = stringRedisTemplate.execute(ACQUIRE_SCRIPT,
+            Arrays.asList(LEASE_KEY, FENCING_TOKEN_KEY), nodeId, String.valueOf(leaseTtlMs));
+        if (token != null && token > 0) {
+            fencingToken = token;
+            leaseDeadlineNanos = startNanos + TimeUnit.MILLISECONDS.toNanos(leaseTtlMs);
+            leaseValue = nodeId + ":" + token;
+            lastRenewedAt = LocalDateTime.now();
+            acquisitions.incrementAndGet();
+            log.info("获取排行榜租约成功: {}", leaseValue);
+        }
+    }
+    
+    private void renew() {
+        long startNanos = System.nanoTime();
+        Long renewed = stringRedisTemplate.execute(RENEW_SCRIPT,
+            Collections.singletonList(LEASE_KEY), leaseValue, String.valueOf(leaseTtlMs));
+        if (renewed != null && renewed == 1) {
+            leaseDeadlineNanos = startNanos + TimeUnit.MILLISECONDS.toNanos(leaseTtlMs);
+            lastRenewedAt = LocalDateTime.now();
+            renewals.incrementAndGet();
+        } else {
+            log.warn("排行榜租约已失效: {}", leaseValue);
+            leaseValue = null;
+            losses.incrementAndGet();
+        }
+    }
+    
+    private static String resolveNodeId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            host = "unknown";
+        }
+        return host + "-" + UUID.randomUUID().toString().substring(0, 8);
+    }
+} 
\ No newline at end of file
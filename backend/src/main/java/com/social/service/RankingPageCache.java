@@ -0,0 +1,220 @@
+package com.social.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.social.entity.User;
+import com.social.repository.UserRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 综合评分排行榜页面缓存
+ * 缓存完整的排行榜页面（用户信息、综合评分、动态数、点赞数、评论数），按版本号存放在Redis中，热路径不查询MySQL
+ * 各节点把本节点的排行榜变更和最近被访问过的页面同步到Redis；持有排行榜租约的节点先生成新版本的全部页面，再切换版本号，
+ * 读取方始终读到已生成的版本
+ * 只缓存对齐的固定大小页面，其余区间限制长度后直接生成；进程内排行榜引擎各节点数据不同，不使用共享缓存
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class RankingPageCache {
+    
+    private final RankingService rankingService;
+    // 仅Redis排行榜引擎需要选主
+    private final Optional<RankingLeaderElection> leaderElection;
+    private final UserRepository userRepository;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final ObjectMapper objectMapper;
+    
+    private static final String VERSION_KEY = "ranking:page:composite_score:version";
+    private static final String PAGE_KEY_PREFIX = "ranking:page:composite_score:v";
+    // 各节点排行榜变更次数之和，作为下一个页面版本号
+    private static final String CHANGES_KEY = "ranking:page:composite_score:changes";
+    // 最近被访问过的页面（start:end），分数为最后访问时间（毫秒）
+    private static final String TRACKED_PAGES_KEY = "ranking:page:composite_score:tracked";
+    
+    // 可缓存的页面大小，页面起点需为页面大小的整数倍
+    private static final List<Integer> CACHEABLE_PAGE_SIZES = Arrays.asList(10, 20, 50);
+    // 可缓存页面的排名上限（不含）
+    private static final int MAX_CACHEABLE_RANK = 1000;
+    // 单次请求最多返回的条数
+    private static final int MAX_PAGE_SIZE = 100;
+    // 预生成的页面数量上限
+    private static final int MAX_TRACKED_PAGES = 16;
+    
+    @Value("${ranking.page-cache.ttl-seconds:600}")
+    private long pageTtlSeconds;
+    
+    @Value("${ranking.page-cache.track-idle-seconds:300}")
+    private long trackIdleSeconds;
+    
+    // 本节点自上次同步以来被访问过的页面及最后访问时间，定时同步到Redis
+    private final Map<String, Long> recentPages = new ConcurrentHashMap<>();
+    
+    // 本节点已同步到Redis的排行榜变更序号
+    private volatile long publishedSequence;
+    // 本节点作为持有租约的节点最近一次生成的版本号
+    private volatile long materializedVersion = -1;
+    
+    /**
+     * 获取综合评分排行榜页面，可缓存的页面优先读取当前版本的缓存
+     * start小于0时按0处理；end小于start或区间超过MAX_PAGE_SIZE时截取为MAX_PAGE_SIZE条
+     */
+    public Map<String, Object> getCompositeScorePage(int start, int end) {
+        int first = Math.max(start, 0);
+        int last = end < first || end - first >= MAX_PAGE_SIZE ? first + MAX_PAGE_SIZE - 1 : end;
+        if (!rankingService.isEngineShared() || !isCacheable(first, last)) {
+            return buildPage(first, last);
+        }
+        recentPages.put(pageId(first, last), System.currentTimeMillis());
+        try {
+            String version = stringRedisTemplate.opsForValue().get(VERSION_KEY);
+            String cached = stringRedisTemplate.opsForValue().get(pageKey(version, first, last));
+            if (cached != null) {
+                return objectMapper.readValue(cached, new TypeReference<Map<String, Object>>() {});
+            }
+            // 页面首次被访问，下一个版本起由持有租约的节点预先生成
+            return materialize(version, first, last);
+        } catch (Exception e) {
+            log.error("读取排行榜页面缓存失败: start={}, end={}", first, last, e);
+            return buildPage(first, last);
+        }
+    }
+    
+    /**
+     * 同步本节点的变更和访问记录；持有租约的节点在有新变更时生成新版本的页面，全部写入后再切换版本号
+     */
+    @Scheduled(fixedDelayString = "${ranking.page-cache.refresh-interval-ms:1000}")
+    public void refreshChangedPages() {
+        if (!rankingService.isEngineShared()) {
+            return;
+        }
+        try {
+            publishChanges();
+            publishRecentPages();
+            if (leaderElection.map(RankingLeaderElection::isLeader).orElse(false)) {
+                materializeNextVersion();
+            }
+        } catch (Exception e) {
+            log.error("更新排行榜页面缓存失败", e);
+        }
+    }
+    
+    private void publishChanges() {
+        long sequence = rankingService.getChangeSequence();
+        if (sequence != publishedSequence) {
+            stringRedisTemplate.opsForValue().increment(CHANGES_KEY);
+            publishedSequence = sequence;
+        }
+    }
+    
+    private void publishRecentPages() {
+        for (String page : recentPages.keySet()) {
+            Long accessedAt = recentPages.remove(page);
+            if (accessedAt != null) {
+                stringRedisTemplate.opsForZSet().add(TRACKED_PAGES_KEY, page, accessedAt);
+            }
+        }
+    }
+    
+    private void materializeNextVersion() throws Exception {
+        String changes = stringRedisTemplate.opsForValue().get(CHANGES_KEY);
+        long version = changes != null ? Long.parseLong(changes) : 0;
+        if (version == materializedVersion) {
+            return;
+        }
+        
+        // 移除长时间未被访问的页面，其余按最近访问时间取前MAX_TRACKED_PAGES个
+        long idleBefore = System.currentTimeMillis() - TimeUnit.SECONDS.toMillis(trackIdleSeconds);
+        stringRedisTemplate.opsForZSet().removeRangeByScore(TRACKED_PAGES_KEY, Double.NEGATIVE_INFINITY, idleBefore);
+        stringRedisTemplate.opsForZSet().removeRange(TRACKED_PAGES_KEY, 0, -MAX_TRACKED_PAGES - 1);
+        Set<String> pages = stringRedisTemplate.opsForZSet().range(TRACKED_PAGES_KEY, 0, -1);
+        
+        String versionValue = String.valueOf(version);
+        if (pages != null) {
+            for (String page : pages) {
+                String[] range = page.split(":");
+                materialize(versionValue, Integer.parseInt(range[0]), Integer.parseInt(range[1]));
+            }
+        }
+        stringRedisTemplate.opsForValue().set(VERSION_KEY, versionValue);
+        materializedVersion = version;
+        log.debug("排行榜页面缓存已更新到版本{}，共{}页", versionValue, pages != null ? pages.size() : 0);
+    }
+    
+    private Map<String, Object> materialize(String version, int start, int end) throws Exception {
+        Map<String, Object> page = buildPage(start, end);
+        stringRedisTemplate.opsForValue().set(pageKey(version, start, end),
+            objectMapper.writeValueAsString(page), pageTtlSeconds, TimeUnit.SECONDS);
+        return page;
+    }
+    
+    /**
+     * 生成排行榜页面：排名和各项指标均来自Redis排行榜，用户信息一次批量查询
+     */
+    private Map<String, Object> buildPage(int start, int end) {
+        List<RankingService.RankingEntry> entries = rankingService.getRankingEntries("composite_score", start, end);
+        List<Long> userIds = entries.stream()
+            .map(RankingService.RankingEntry::getUserId)
+            .collect(Collectors.toList());
+        
+        Map<Long, User> users = userRepository.findAllById(userIds).stream()
+            .collect(Collectors.toMap(User::getId, Function.identity()));
+        Map<Long, Long> postCounts = rankingService.getScores("post_count", userIds);
+        Map<Long, Long> totalLikes = rankingService.getScores("post_likes", userIds);
+        Map<Long, Long> totalComments = rankingService.getScores("post_comments", userIds);
+        
+        List<Map<String, Object>> userRankingData = new ArrayList<>();
+        for (RankingService.RankingEntry entry : entries) {
+            User user = users.get(entry.getUserId());
+            if (user == null) {
+                continue;
+            }
+            Map<String, Object> userData = new HashMap<>();
+            userData.put("rank", entry.getRank());
+            userData.put("user", user);
+            userData.put("compositeScore", entry.getScore());
+            userData.put("postCount", postCounts.get(user.getId()));
+            userData.put("totalLikes", totalLikes.get(user.getId()));
+            userData.put("totalComments", totalComments.get(user.getId()));
+            userRankingData.add(userData);
+        }
+        
+        Map<String, Object> page = new HashMap<>();
+        page.put("userRankings", userRankingData);
+        page.put("total", rankingService.getRankingSize("composite_score"));
+        return page;
+    }
+    
+    /**
+     * 只缓存起点对齐、大小固定且排名靠前的页面，避免任意区间占满预生成名额
+     */
+    private static boolean isCacheable(int start, int end) {
+        int size = end - start + 1;
+        return CACHEABLE_PAGE_SIZES.contains(size) && start % size == 0 && end < MAX_CACHEABLE_RANK;
+    }
+    
+    private static String pageId(int start, int end) {
+        return start + ":" + end;
+    }
+    
+    private static String pageKey(String version, int start, int end) {
+        return PAGE_KEY_PREFIX + (version != null ? version : "0") + ":" + pageId(start, end);
+    }
+} 
\ No newline at end of file
@@ -0,0 +1,332 @@
+package com.social.service;
+
+import com.social.repository.PostRepository;
+import com.social.repository.UserRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+/**
+ * 排行榜全量重建
+ * 按用户ID区间分片，在ForkJoin线程池中并行聚合并写入排行榜引擎的重建副本（Redis为影子key），全部完成后原子替换线上排行榜，
+ * 读取方不会看到重建到一半的排行榜
+ * 共享排行榜的定时重建只在持有租约的节点上执行（见RankingLeaderElection），替换前校验fencing token，租约丢失的节点不会覆盖新结果；
+ * 进程内排行榜由每个节点在启动时和定时任务中各自重建
+ * 重建期间写入的增量同时累加到重建副本，替换后不会丢失；只有快照读取前后一个增量刷新间隔内的变更可能多计或漏计，由下一次重建修正
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class RankingRebuildService {
+    
+    private final RankingEngine rankingEngine;
+    // 仅Redis排行榜引擎需要选主
+    private final Optional<RankingLeaderElection> leaderElection;
+    private final RankingService rankingService;
+    private final PostRepository postRepository;
+    private final UserRepository userRepository;
+    private final PlatformTransactionManager transactionManager;
+    
+    // 每批写入排行榜引擎的用户数
+    private static final int CHUNK_SIZE = 500;
+    
+    // 关闭时等待任务放弃影子数据的秒数
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 10;
+    
+    @Value("${ranking.rebuild.partition-size:10000}")
+    private long partitionSize;
+    
+    @Value("${ranking.rebuild.parallelism:4}")
+    private int parallelism;
+    
+    private final ExecutorService jobExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "ranking-rebuild-job");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
+    private volatile ForkJoinPool partitionPool;
+    
+    // 当前或最近一次重建任务
+    private final AtomicReference<RebuildJob> currentJob = new AtomicReference<>();
+    
+    // 正在写入的重建目标，任务结束后清空
+    private volatile RankingEngine.RebuildTarget activeTarget;
+    
+    /**
+     * 进程内排行榜启动时为空，应用就绪后立即重建
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildOnStartup() {
+        if (!rankingEngine.isShared()) {
+            submitRebuild();
+        }
+    }
+    
+    /**
+     * 定时全量重建排行榜，共享排行榜仅持有租约的节点执行
+     * 任务在后台线程中执行，不占用调度线程，避免阻塞租约续约
+     */
+    @Scheduled(fixedRate = 300000) // 每5分钟更新一次
+    public void scheduledRebuild() {
+        String leaseValue = null;
+        if (rankingEngine.isShared()) {
+            leaseValue = leaderElection.map(RankingLeaderElection::getLeaseValue).orElse(null);
+            if (leaseValue == null) {
+                log.debug("当前节点未持有排行榜租约，跳过定时更新");
+                return;
+            }
+        }
+        RebuildJob job = tryStartJob("SCHEDULED", leaseValue);
+        if (job == null) {
+            log.info("排行榜重建任务正在执行，跳过本次定时更新");
+            return;
+        }
+        jobExecutor.submit(() -> runJob(job));
+    }
+    
+    /**
+     * 在后台提交一次重建任务，已有任务在执行时返回该任务
+     * 手动触发的任务不校验租约
+     */
+    public RebuildJob submitRebuild() {
+        RebuildJob job = tryStartJob("MANUAL", null);
+        if (job == null) {
+            return currentJob.get();
+        }
+        jobExecutor.submit(() -> runJob(job));
+        return job;
+    }
+    
+    /**
+     * 获取当前或最近一次重建任务
+     */
+    public RebuildJob getCurrentJob() {
+        return currentJob.get();
+    }
+    
+    /**
+     * 中断正在执行的任务并等待其放弃影子数据，超时后直接放弃，避免重建标记和影子key残留
+     */
+    @PreDestroy
+    public void shutdown() {
+        jobExecutor.shutdownNow();
+        if (partitionPool != null) {
+            partitionPool.shutdownNow();
+        }
+        try {
+            if (jobExecutor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        RankingEngine.RebuildTarget target = activeTarget;
+        if (target != null) {
+            target.abort();
+        }
+    }
+    
+    private RebuildJob tryStartJob(String trigger, String leaseValue) {
+        RebuildJob previous = currentJob.get();
+        if (previous != null && previous.isRunning()) {
+            return null;
+        }
+        RebuildJob job = new RebuildJob(trigger, leaseValue);
+        return currentJob.compareAndSet(previous, job) ? job : null;
+    }
+    
+    private void runJob(RebuildJob job) {
+        RankingEngine.RebuildTarget target = null;
+        boolean committed = false;
+        try {
+            target = rankingEngine.beginRebuild(job.getJobId());
+            activeTarget = target;
+            log.info("开始重建排行榜: jobId={}, trigger={}", job.getJobId(), job.getTrigger());
+            long startTime = System.currentTimeMillis();
+            
+            Long minUserId = userRepository.findMinUserId();
+            Long maxUserId = userRepository.findMaxUserId();
+            if (minUserId != null && maxUserId != null) {
+                job.totalPartitions.set((int) ((maxUserId - minUserId) / partitionSize + 1));
+                getPartitionPool().invoke(new PartitionTask(job, target, minUserId, maxUserId));
+            }
+            
+            // 没有用户时提交空的重建结果，即清空排行榜
+            if (!target.commit(job.leaseValue)) {
+                throw new IllegalStateException("排行榜租约已失效，放弃替换排行榜");
+            }
+            committed = true;
+            rankingService.markChanged();
+            job.complete();
+            log.info("排行榜重建完成: jobId={}, 共处理{}个用户，耗时{}ms",
+                job.getJobId(), job.processedUsers.get(), System.currentTimeMillis() - startTime);
+        } catch (Exception e) {
+            job.fail(e);
+            log.error("排行榜重建失败: jobId={}", job.getJobId(), e);
+        } finally {
+            // 被中断或抛出Error时同样放弃，未替换的影子数据不能留给其他节点继续双写
+            activeTarget = null;
+            if (target != null && !committed) {
+                target.abort();
+            }
+        }
+    }
+    
+    private ForkJoinPool getPartitionPool() {
+        if (partitionPool == null) {
+            synchronized (this) {
+                if (partitionPool == null) {
+                    partitionPool = new ForkJoinPool(parallelism);
+                }
+            }
+        }
+        return partitionPool;
+    }
+    
+    /**
+     * 按用户ID区间二分拆分，直到区间不超过分片大小
+     */
+    private class PartitionTask extends RecursiveAction {
+        
+        private final RebuildJob job;
+        private final RankingEngine.RebuildTarget target;
+        private final long fromUserId;
+        private final long toUserId;
+        
+        PartitionTask(RebuildJob job, RankingEngine.RebuildTarget target, long fromUserId, long toUserId) {
+            this.job = job;
+            this.target = target;
+            this.fromUserId = fromUserId;
+            this.toUserId = toUserId;
+        }
+        
+        @Override
+        protected void compute() {
+            long partitions = (toUserId - fromUserId) / partitionSize + 1;
+            if (partitions <= 1) {
+                rebuildPartition(job, target, fromUserId, toUserId);
+                return;
+            }
+            long splitAt = fromUserId + (partitions / 2) * partitionSize;
+            invokeAll(new PartitionTask(job, target, fromUserId, splitAt - 1),
+                new PartitionTask(job, target, splitAt, toUserId));
+        }
+    }
+    
+    /**
+     * 流式读取一个用户ID区间的聚合数据并分批写入重建副本
+     */
+    private void rebuildPartition(RebuildJob job, RankingEngine.RebuildTarget target, long fromUserId, long toUserId) {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setReadOnly(true);
+        
+        transactionTemplate.executeWithoutResult(status -> {
+            List<PostRepository.UserPostStats> chunk = new ArrayList<>(CHUNK_SIZE);
+            try (Stream<PostRepository.UserPostStats> stats = postRepository.streamUserPostStats(fromUserId, toUserId)) {
+                Iterator<PostRepository.UserPostStats> iterator = stats.iterator();
+                while (iterator.hasNext()) {
+                    chunk.add(iterator.next());
+                    if (chunk.size() >= CHUNK_SIZE) {
+                        target.write(chunk);
+                        job.processedUsers.addAndGet(chunk.size());
+                        chunk.clear();
+                    }
+                }
+            }
+            if (!chunk.isEmpty()) {
+                target.write(chunk);
+                job.processedUsers.addAndGet(chunk.size());
+            }
+        });
+        job.completedPartitions.incrementAndGet();
+    }
+    
+    /**
+     * 重建任务状态
+     */
+    public static class RebuildJob {
+        
+        public enum Status { RUNNING, COMPLETED, FAILED }
+        
+        private final String jobId = UUID.randomUUID().toString();
+        private final String trigger;
+        // 定时任务启动时持有的租约值，手动任务为null
+        private final String leaseValue;
+        private final LocalDateTime startedAt = LocalDateTime.now();
+        private final AtomicInteger totalPartitions = new AtomicInteger();
+        private final AtomicInteger completedPartitions = new AtomicInteger();
+        private final AtomicLong processedUsers = new AtomicLong();
+        private volatile Status status = Status.RUNNING;
+        private volatile LocalDateTime finishedAt;
+        private volatile String error;
+        
+        RebuildJob(String trigger, String leaseValue) {
+            this.trigger = trigger;
+            this.leaseValue = leaseValue;
+        }
+        
+        public String getJobId() {
+            return jobId;
+        }
+        
+        public String getTrigger() {
+            return trigger;
+        }
+        
+        public boolean isRunning() {
+            return status == Status.RUNNING;
+        }
+        
+        void complete() {
+            finishedAt = LocalDateTime.now();
+            status = Status.COMPLETED;
+        }
+        
+        void fail(Exception e) {
+            error = e.getMessage();
+            finishedAt = LocalDateTime.now();
+            status = Status.FAILED;
+        }
+        
+        public Map<String, Object> toMap() {
+            Map<String, Object> data = new HashMap<>();
+            data.put("jobId", jobId);
+            data.put("trigger", trigger);
+            data.put("leaseValue", leaseValue);
+            data.put("status", status);
+            data.put("totalPartitions", totalPartitions.get());
+            data.put("completedPartitions", completedPartitions.get());
+            data.put("processedUsers", processedUsers.get());
+            data.put("startedAt", startedAt);
+            data.put("finishedAt", finishedAt);
+            data.put("error", error);
+            return data;
+        }
+    }
+} 
\ No newline at end of file
@@ -1,212 +1,313 @@
 package com.social.service;
 
-import com.social.entity.User;
-import com.social.repository.UserRepository;
+import com.social.entity.Post;
 import com.social.repository.PostRepository;
+import com.social.util.TransactionUtils;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
-import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
-@ConditionalOnProperty(name = "spring.redis.host", havingValue = "localhost", matchIfMissing = true)
 public class RankingService {
     
-    private final RedisTemplate<String, Object> redisTemplate;
-    private final UserRepository userRepository;
+    private final RankingEngine rankingEngine;
     private final PostRepository postRepository;
     
-    private static final String POST_COUNT_RANKING_KEY = "ranking:post_count";
-    private static final String POST_LIKES_RANKING_KEY = "ranking:post_likes";
-    private static final String POST_COMMENTS_RANKING_KEY = "ranking:post_comments";
-    private static final String COMPOSITE_SCORE_RANKING_KEY = "ranking:composite_score";
+    // 排行榜类型，各排行榜引擎按此顺序存放排行榜
+    static final List<String> RANKING_TYPES = Arrays.asList(
+        "post_count", "post_likes", "post_comments", "composite_score");
+    
+    // "我的周边"最多返回的前后邻居数
+    static final int MAX_AROUND_NEIGHBOURS = 50;
+    
+    // 时间窗口排行榜：窗口名称 -> 覆盖的小时分桶数
+    static final Map<String, Integer> WINDOW_HOURS = new HashMap<>();
+    static {
+        WINDOW_HOURS.put("day", 24);
+        WINDOW_HOURS.put("week", 24 * 7);
+        WINDOW_HOURS.put("month", 24 * 30);
+    }
+    
+    // 本节点排行榜变更序号，供排行榜页面缓存判断是否需要重新生成
+    private final AtomicLong changeSequence = new AtomicLong();
+    
+    // 待写入排行榜的增量，同一用户的多次变更合并为一条，由定时任务批量写入
+    private final ConcurrentHashMap<Long, UserDelta> pendingDeltas = new ConcurrentHashMap<>();
+    private final LongAdder receivedEvents = new LongAdder();
+    private final LongAdder flushedUsers = new LongAdder();
+    private final LongAdder failedFlushes = new LongAdder();
+    private volatile LocalDateTime lastFlushedAt;
+    
+    // 综合评分权重
+    static final int POST_COUNT_WEIGHT = 10;
+    static final int LIKES_WEIGHT = 5;
+    static final int COMMENTS_WEIGHT = 3;
     
     /**
-     * 实时更新用户发布动态数排行榜
+     * 增量更新用户动态数排行榜
      */
-    public void updateUserPostCount(Long userId) {
-        try {
-            if (userId != null && redisTemplate != null) {
-                // 从数据库获取用户最新动态数
-                long postCount = postRepository.countByUserId(userId);
-                redisTemplate.opsForZSet().add(POST_COUNT_RANKING_KEY, userId.toString(), postCount);
-                log.info("实时更新用户{}的动态数排行榜，动态数: {}", userId, postCount);
-                
-                // 同时更新综合评分
-                updateUserCompositeScore(userId);
-            }
-        } catch (Exception e) {
-            log.error("更新用户动态数排行榜失败: userId={}", userId, e);
+    public void incrementUserPostCount(Long userId, long delta) {
+        applyUserDeltas(userId, delta, 0, 0);
+    }
+    
+    /**
+     * 增量更新用户动态总点赞数排行榜
+     */
+    public void incrementUserPostLikes(Long userId, long delta) {
+        applyUserDeltas(userId, 0, delta, 0);
+    }
+    
+    /**
+     * 增量更新用户动态总评论数排行榜
+     */
+    public void incrementUserPostComments(Long userId, long delta) {
+        applyUserDeltas(userId, 0, 0, delta);
+    }
+    
+    /**
+     * 按增量更新用户的各项排行榜
+     * 增量先合并到待写入队列，由定时任务每个间隔对每个用户最多写入一次，写入次数取决于作者数而不是事件数
+     * 在事务中调用时延迟到事务提交后入队，避免回滚后排行榜多计
+     * 正增量同时计入当前小时的时间窗口分桶；负增量无法确定原活动的时间，只扣减总排行榜，撤销已知时间的活动请使用revertUserActivity
+     */
+    public void applyUserDeltas(Long userId, long postCountDelta, long likesDelta, long commentsDelta) {
+        long[] hourly = {Math.max(postCountDelta, 0), Math.max(likesDelta, 0), Math.max(commentsDelta, 0)};
+        enqueue(userId, postCountDelta, likesDelta, commentsDelta, Collections.singletonMap(currentHour(), hourly));
+    }
+    
+    /**
+     * 撤销过去发生的一次活动（取消点赞、删除评论）：总排行榜扣减增量，时间窗口只扣减原活动所在的小时分桶，
+     * 原活动早于最长的时间窗口时不影响时间窗口排行榜
+     *
+     * @param occurredAt 原活动发生的时间
+     */
+    public void revertUserActivity(Long userId, long postCountDelta, long likesDelta, long commentsDelta,
+                                   LocalDateTime occurredAt) {
+        Map<LocalDateTime, long[]> hourly = new HashMap<>();
+        addHourlyDelta(hourly, occurredAt, postCountDelta, likesDelta, commentsDelta);
+        revertUserActivity(userId, postCountDelta, likesDelta, commentsDelta, hourly);
+    }
+    
+    /**
+     * 撤销跨多个小时的活动（删除动态时扣除其点赞和评论）
+     *
+     * @param hourlyDeltas 原活动所在的小时 -> 该小时内的动态数/点赞数/评论数增量（负数）
+     */
+    public void revertUserActivity(Long userId, long postCountDelta, long likesDelta, long commentsDelta,
+                                   Map<LocalDateTime, long[]> hourlyDeltas) {
+        enqueue(userId, postCountDelta, likesDelta, commentsDelta, hourlyDeltas);
+    }
+    
+    /**
+     * 把增量累加到按小时分组的窗口增量中，早于最长的时间窗口的活动忽略
+     */
+    public static void addHourlyDelta(Map<LocalDateTime, long[]> hourlyDeltas, LocalDateTime occurredAt,
+                                      long postCountDelta, long likesDelta, long commentsDelta) {
+        if (occurredAt == null || occurredAt.isBefore(oldestWindowHour())) {
+            return;
         }
+        long[] delta = hourlyDeltas.computeIfAbsent(occurredAt.truncatedTo(ChronoUnit.HOURS), hour -> new long[3]);
+        delta[0] += postCountDelta;
+        delta[1] += likesDelta;
+        delta[2] += commentsDelta;
     }
     
     /**
-     * 实时更新用户动态总点赞数排行榜
+     * 最长的时间窗口覆盖的第一个小时
      */
-    public void updateUserPostLikes(Long userId) {
-        try {
-            if (userId != null && redisTemplate != null) {
-                // 计算用户所有动态的总点赞数
-                long totalLikes = postRepository.findByUserIdOrderByCreatedAtDesc(userId)
-                    .stream()
-                    .mapToLong(post -> post.getLikeCount() != null ? post.getLikeCount() : 0)
-                    .sum();
-                
-                redisTemplate.opsForZSet().add(POST_LIKES_RANKING_KEY, userId.toString(), totalLikes);
-                log.info("实时更新用户{}的动态点赞数排行榜，总点赞数: {}", userId, totalLikes);
-                
-                // 同时更新综合评分
-                updateUserCompositeScore(userId);
-            }
-        } catch (Exception e) {
-            log.error("更新用户动态点赞数排行榜失败: userId={}", userId, e);
+    public static LocalDateTime oldestWindowHour() {
+        int maxHours = Collections.max(WINDOW_HOURS.values());
+        return currentHour().minusHours(maxHours - 1);
+    }
+    
+    private void enqueue(Long userId, long postCountDelta, long likesDelta, long commentsDelta,
+                         Map<LocalDateTime, long[]> hourlyDeltas) {
+        UserDelta delta = new UserDelta(postCountDelta, likesDelta, commentsDelta, hourlyDeltas);
+        if (userId == null || delta.isEmpty()) {
+            return;
         }
+        TransactionUtils.runAfterCommit(() -> {
+            receivedEvents.increment();
+            pendingDeltas.merge(userId, delta, UserDelta::plus);
+        });
+    }
+    
+    private static LocalDateTime currentHour() {
+        return LocalDateTime.now().truncatedTo(ChronoUnit.HOURS);
     }
     
     /**
-     * 实时更新用户动态总评论数排行榜
+     * 把合并后的增量写入排行榜引擎，三项增量和综合评分重算由排行榜引擎一次完成，综合评分始终基于最新值
+     * 写入失败的增量重新放回队列，下个间隔重试
      */
-    public void updateUserPostComments(Long userId) {
-        try {
-            if (userId != null && redisTemplate != null) {
-                // 计算用户所有动态的总评论数
-                long totalComments = postRepository.findByUserIdOrderByCreatedAtDesc(userId)
-                    .stream()
-                    .mapToLong(post -> post.getCommentCount() != null ? post.getCommentCount() : 0)
-                    .sum();
-                
-                redisTemplate.opsForZSet().add(POST_COMMENTS_RANKING_KEY, userId.toString(), totalComments);
-                log.info("实时更新用户{}的动态评论数排行榜，总评论数: {}", userId, totalComments);
-                
-                // 同时更新综合评分
-                updateUserCompositeScore(userId);
+    @Scheduled(fixedDelayString = "${ranking.delta.flush-interval-ms:1000}")
+    public void flushPendingDeltas() {
+        int flushed = 0;
+        for (Long userId : pendingDeltas.keySet()) {
+            UserDelta delta = pendingDeltas.remove(userId);
+            if (delta == null) {
+                continue;
             }
-        } catch (Exception e) {
-            log.error("更新用户动态评论数排行榜失败: userId={}", userId, e);
+            try {
+                long compositeScore = rankingEngine.applyDeltas(userId, delta.postCount, delta.likes, delta.comments,
+                    delta.hourly);
+                flushed++;
+                log.debug("增量更新用户{}的排行榜: 动态数{}, 点赞数{}, 评论数{}, 综合评分{}",
+                    userId, delta.postCount, delta.likes, delta.comments, compositeScore);
+            } catch (Exception e) {
+                failedFlushes.increment();
+                pendingDeltas.merge(userId, delta, UserDelta::plus);
+                log.error("增量更新用户排行榜失败，稍后重试: userId={}", userId, e);
+            }
+        }
+        if (flushed > 0) {
+            flushedUsers.add(flushed);
+            lastFlushedAt = LocalDateTime.now();
+            markChanged();
         }
     }
     
     /**
-     * 更新用户综合评分排行榜
+     * 停止前写入剩余的增量
+     */
+    @PreDestroy
+    public void flushOnShutdown() {
+        flushPendingDeltas();
+    }
+    
+    /**
+     * 增量队列统计：队列深度（待写入的用户数）、收到的事件数、实际写入次数及合并比例
+     */
+    public Map<String, Object> getDeltaQueueStats() {
+        long events = receivedEvents.sum();
+        long flushes = flushedUsers.sum();
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("queueDepth", pendingDeltas.size());
+        stats.put("receivedEvents", events);
+        stats.put("flushedUsers", flushes);
+        stats.put("failedFlushes", failedFlushes.sum());
+        stats.put("coalescingRatio", flushes > 0 ? (double) events / flushes : null);
+        stats.put("lastFlushedAt", lastFlushedAt);
+        return stats;
+    }
+    
+    /**
+     * 全量重算用户的各项排行榜数据（仅用于修复增量误差）
      * 综合评分 = 动态数 × 10 + 总点赞数 × 5 + 总评论数 × 3
      */
-    public void updateUserCompositeScore(Long userId) {
+    public void repairUserRanking(Long userId) {
         try {
-            if (userId != null && redisTemplate != null) {
-                // 获取各项数据
-                long postCount = postRepository.countByUserId(userId);
-                
-                long totalLikes = postRepository.findByUserIdOrderByCreatedAtDesc(userId)
-                    .stream()
+            if (userId != null) {
+                // 数据库中已包含这些增量，丢弃未写入的部分以免重复累加
+                pendingDeltas.remove(userId);
+                List<Post> posts = postRepository.findByUserIdOrderByCreatedAtDesc(userId);
+                long postCount = posts.size();
+                long totalLikes = posts.stream()
                     .mapToLong(post -> post.getLikeCount() != null ? post.getLikeCount() : 0)
                     .sum();
-                
-                long totalComments = postRepository.findByUserIdOrderByCreatedAtDesc(userId)
-                    .stream()
+                long totalComments = posts.stream()
                     .mapToLong(post -> post.getCommentCount() != null ? post.getCommentCount() : 0)
                     .sum();
                 
-                // 计算综合评分
-                double compositeScore = postCount * 10 + totalLikes * 5 + totalComments * 3;
-                
-                redisTemplate.opsForZSet().add(COMPOSITE_SCORE_RANKING_KEY, userId.toString(), compositeScore);
-                log.info("实时更新用户{}的综合评分排行榜，评分: {} (动态数:{}, 点赞数:{}, 评论数:{})", 
-                    userId, compositeScore, postCount, totalLikes, totalComments);
+                rankingEngine.setStats(userId, postCount, totalLikes, totalComments);
+                markChanged();
+                log.info("重算用户{}的排行榜，评分: {} (动态数:{}, 点赞数:{}, 评论数:{})",
+                    userId, compositeScore(postCount, totalLikes, totalComments), postCount, totalLikes, totalComments);
             }
         } catch (Exception e) {
-            log.error("更新用户综合评分排行榜失败: userId={}", userId, e);
+            log.error("重算用户排行榜失败: userId={}", userId, e);
         }
     }
     
     /**
-     * 获取动态数排行榜
+     * 获取排行榜（按排名顺序，带排名和分数）
      */
-    public Set<Object> getPostCountRanking(int start, int end) {
+    public List<RankingEntry> getRankingEntries(String rankingType, int start, int end) {
         try {
-            if (redisTemplate != null) {
-                return redisTemplate.opsForZSet().reverseRange(POST_COUNT_RANKING_KEY, start, end);
-            }
+            return rankingEngine.range(rankingType, start, end);
         } catch (Exception e) {
-            log.error("获取动态数排行榜时发生错误", e);
+            log.error("获取排行榜时发生错误: rankingType={}", rankingType, e);
         }
-        return null;
+        return new ArrayList<>();
     }
     
     /**
-     * 获取动态点赞数排行榜
+     * 获取时间窗口排行榜（day/week/month），按排名顺序返回用户ID及分数
      */
-    public Set<Object> getPostLikesRanking(int start, int end) {
-        try {
-            if (redisTemplate != null) {
-                return redisTemplate.opsForZSet().reverseRange(POST_LIKES_RANKING_KEY, start, end);
-            }
-        } catch (Exception e) {
-            log.error("获取动态点赞数排行榜时发生错误", e);
-        }
-        return null;
+    public List<RankingEntry> getWindowRankingEntries(String window, String rankingType, int start, int end) {
+        return rankingEngine.windowRange(window, rankingType, start, end);
     }
     
     /**
-     * 获取动态评论数排行榜
+     * 获取时间窗口排行榜总人数
      */
-    public Set<Object> getPostCommentsRanking(int start, int end) {
-        try {
-            if (redisTemplate != null) {
-                return redisTemplate.opsForZSet().reverseRange(POST_COMMENTS_RANKING_KEY, start, end);
-            }
-        } catch (Exception e) {
-            log.error("获取动态评论数排行榜时发生错误", e);
-        }
-        return null;
+    public long getWindowRankingSize(String window, String rankingType) {
+        return rankingEngine.windowSize(window, rankingType);
     }
     
     /**
-     * 获取综合评分排行榜
+     * 是否支持的时间窗口
      */
-    public Set<Object> getCompositeScoreRanking(int start, int end) {
-        try {
-            if (redisTemplate != null) {
-                return redisTemplate.opsForZSet().reverseRange(COMPOSITE_SCORE_RANKING_KEY, start, end);
-            }
-        } catch (Exception e) {
-            log.error("获取综合评分排行榜时发生错误", e);
-        }
-        return null;
+    public static boolean isSupportedWindow(String window) {
+        return WINDOW_HOURS.containsKey(window);
     }
     
     /**
-     * 获取综合评分排行榜（带分数）
+     * 获取排行榜总人数
      */
-    public Map<String, Double> getCompositeScoreRankingWithScores(int start, int end) {
+    public long getRankingSize(String rankingType) {
         try {
-            if (redisTemplate != null) {
-                Set<Object> userIds = redisTemplate.opsForZSet().reverseRange(COMPOSITE_SCORE_RANKING_KEY, start, end);
-                Map<String, Double> result = new HashMap<>();
-                
-                if (userIds != null) {
-                    for (Object userId : userIds) {
-                        Double score = redisTemplate.opsForZSet().score(COMPOSITE_SCORE_RANKING_KEY, userId.toString());
-                        if (score != null) {
-                            result.put(userId.toString(), score);
-                        }
-                    }
-                }
-                
-                return result;
-            }
+            return rankingEngine.size(rankingType);
         } catch (Exception e) {
-            log.error("获取综合评分排行榜（带分数）时发生错误", e);
+            log.error("获取排行榜总人数时发生错误: rankingType={}", rankingType, e);
         }
-        return new HashMap<>();
+        return 0;
+    }
+    
+    /**
+     * 批量获取用户在某个排行榜上的分数，不在排行榜上的用户分数为0
+     */
+    public Map<Long, Long> getScores(String rankingType, List<Long> userIds) {
+        return rankingEngine.scores(rankingType, userIds);
+    }
+    
+    /**
+     * 排行榜数据是否在多个节点间共享
+     */
+    public boolean isEngineShared() {
+        return rankingEngine.isShared();
+    }
+    
+    /**
+     * 标记排行榜已变更
+     */
+    public void markChanged() {
+        changeSequence.incrementAndGet();
+    }
+    
+    /**
+     * 本节点排行榜变更序号
+     */
+    public long getChangeSequence() {
+        return changeSequence.get();
     }
     
     /**
@@ -214,9 +315,8 @@ public class RankingService {
      */
     public Long getUserRank(Long userId, String rankingType) {
         try {
-            if (userId != null && redisTemplate != null) {
-                String key = getRankingKey(rankingType);
-                return redisTemplate.opsForZSet().reverseRank(key, userId.toString());
+            if (userId != null) {
+                return rankingEngine.rank(rankingType, userId);
             }
         } catch (Exception e) {
             log.error("获取用户排名时发生错误: userId={}, rankingType={}", userId, rankingType, e);
@@ -225,35 +325,25 @@ public class RankingService {
     }
     
     /**
-     * 获取用户排行榜数据
+     * 获取用户排行榜数据（各项排名从0开始，数值取自排行榜分数）
      */
     public Map<String, Object> getUserRankingData(Long userId) {
         Map<String, Object> data = new HashMap<>();
         try {
-            if (userId != null && redisTemplate != null) {
-                // 获取各项排名
-                data.put("postCountRank", getUserRank(userId, "post_count"));
-                data.put("postLikesRank", getUserRank(userId, "post_likes"));
-                data.put("postCommentsRank", getUserRank(userId, "post_comments"));
-                data.put("compositeScoreRank", getUserRank(userId, "composite_score"));
-                
-                // 获取具体数值
-                data.put("postCount", postRepository.countByUserId(userId));
+            if (userId != null) {
+                Map<String, Object> around = getUserAround(userId, "composite_score", 0);
+                @SuppressWarnings("unchecked")
+                Map<String, Map<String, Object>> boards = (Map<String, Map<String, Object>>) around.get("boards");
                 
-                long totalLikes = postRepository.findByUserIdOrderByCreatedAtDesc(userId)
-                    .stream()
-                    .mapToLong(post -> post.getLikeCount() != null ? post.getLikeCount() : 0)
-                    .sum();
-                data.put("totalLikes", totalLikes);
-                
-                long totalComments = postRepository.findByUserIdOrderByCreatedAtDesc(userId)
-                    .stream()
-                    .mapToLong(post -> post.getCommentCount() != null ? post.getCommentCount() : 0)
-                    .sum();
-                data.put("totalComments", totalComments);
+                data.put("postCountRank", zeroBasedRank(boards.get("post_count")));
+                data.put("postLikesRank", zeroBasedRank(boards.get("post_likes")));
+                data.put("postCommentsRank", zeroBasedRank(boards.get("post_comments")));
+                data.put("compositeScoreRank", zeroBasedRank(boards.get("composite_score")));
                 
-                double compositeScore = (long)data.get("postCount") * 10 + totalLikes * 5 + totalComments * 3;
-                data.put("compositeScore", compositeScore);
+                data.put("postCount", boards.get("post_count").get("score"));
+                data.put("totalLikes", boards.get("post_likes").get("score"));
+                data.put("totalComments", boards.get("post_comments").get("score"));
+                data.put("compositeScore", ((Long) boards.get("composite_score").get("score")).doubleValue());
             }
         } catch (Exception e) {
             log.error("获取用户排行榜数据时发生错误: userId={}", userId, e);
@@ -262,55 +352,108 @@ public class RankingService {
     }
     
     /**
-     * 手动触发排行榜更新
+     * 获取用户在全部排行榜上的排名和分数，以及指定排行榜上前后k名的邻居
+     * 由排行榜引擎一次完成，不查询MySQL；用户不在榜上时排名为null、分数为0
      */
-    public void manualUpdateRankings() {
-        log.info("手动触发排行榜更新...");
-        updateAllRankings();
+    public Map<String, Object> getUserAround(Long userId, String rankingType, int k) {
+        int neighbours = Math.max(0, Math.min(k, MAX_AROUND_NEIGHBOURS));
+        return rankingEngine.around(userId, rankingType, neighbours);
     }
     
     /**
-     * 定时更新所有排行榜数据
+     * 组装周边排名结果
+     *
+     * @param ranks 各排行榜上的排名（从0开始，-1表示不在榜上），顺序同 RANKING_TYPES
+     * @param scores 各排行榜上的分数
      */
-    @Scheduled(fixedRate = 300000) // 每5分钟更新一次
-    public void updateAllRankings() {
-        try {
-            log.info("开始更新所有排行榜数据...");
-            
-            if (redisTemplate == null) {
-                log.error("RedisTemplate为空，跳过排行榜更新");
-                return;
+    static Map<String, Object> aroundResult(long[] ranks, long[] scores, List<RankingEntry> neighbours) {
+        Map<String, Object> boards = new HashMap<>();
+        for (int i = 0; i < RANKING_TYPES.size(); i++) {
+            Map<String, Object> board = new HashMap<>();
+            board.put("rank", ranks[i] >= 0 ? ranks[i] + 1 : null);
+            board.put("score", scores[i]);
+            boards.put(RANKING_TYPES.get(i), board);
+        }
+        
+        Map<String, Object> result = new HashMap<>();
+        result.put("boards", boards);
+        result.put("neighbours", neighbours);
+        return result;
+    }
+    
+    private static Long zeroBasedRank(Map<String, Object> board) {
+        Long rank = (Long) board.get("rank");
+        return rank != null ? rank - 1 : null;
+    }
+    
+    static long compositeScore(long postCount, long totalLikes, long totalComments) {
+        return postCount * POST_COUNT_WEIGHT + totalLikes * LIKES_WEIGHT + totalComments * COMMENTS_WEIGHT;
+    }
+    
+    /**
+     * 排行榜类型在 RANKING_TYPES 中的下标，未知类型按综合评分处理
+     */
+    static int boardIndex(String rankingType) {
+        int index = RANKING_TYPES.indexOf(rankingType);
+        return index >= 0 ? index : RANKING_TYPES.size() - 1;
+    }
+    
+    /**
+     * 一个用户待写入的增量（总排行榜增量及按小时分组的时间窗口增量），不可变，合并时生成新对象；全部为0时返回null，从队列中移除
+     */
+    private static final class UserDelta {
+        
+        private final long postCount;
+        private final long likes;
+        private final long comments;
+        private final Map<LocalDateTime, long[]> hourly;
+        
+        UserDelta(long postCount, long likes, long comments, Map<LocalDateTime, long[]> hourly) {
+            this.postCount = postCount;
+            this.likes = likes;
+            this.comments = comments;
+            this.hourly = new HashMap<>();
+            for (Map.Entry<LocalDateTime, long[]> entry : hourly.entrySet()) {
+                long[] delta = entry.getValue();
+                if (delta[0] != 0 || delta[1] != 0 || delta[2] != 0) {
+                    this.hourly.put(entry.getKey(), delta.clone());
+                }
             }
-            
-            // 获取所有用户并更新排行榜
-            List<User> allUsers = userRepository.findAll();
-            for (User user : allUsers) {
-                if (user != null && user.getId() != null) {
-                    updateUserPostCount(user.getId());
-                    updateUserPostLikes(user.getId());
-                    updateUserPostComments(user.getId());
-                    updateUserCompositeScore(user.getId());
+        }
+        
+        boolean isEmpty() {
+            return postCount == 0 && likes == 0 && comments == 0 && hourly.isEmpty();
+        }
+        
+        UserDelta plus(UserDelta other) {
+            Map<LocalDateTime, long[]> mergedHourly = new HashMap<>();
+            for (Map<LocalDateTime, long[]> source : Arrays.asList(hourly, other.hourly)) {
+                for (Map.Entry<LocalDateTime, long[]> entry : source.entrySet()) {
+                    long[] delta = entry.getValue();
+                    addDelta(mergedHourly.computeIfAbsent(entry.getKey(), hour -> new long[3]), delta);
                 }
             }
-            
-            log.info("所有排行榜数据更新完成，共处理{}个用户", allUsers.size());
-        } catch (Exception e) {
-            log.error("更新排行榜数据时发生错误: {}", e.getMessage(), e);
+            UserDelta merged = new UserDelta(postCount + other.postCount, likes + other.likes,
+                comments + other.comments, mergedHourly);
+            return merged.isEmpty() ? null : merged;
+        }
+        
+        private static void addDelta(long[] target, long[] delta) {
+            for (int i = 0; i < target.length; i++) {
+                target[i] += delta[i];
+            }
         }
     }
     
-    private String getRankingKey(String rankingType) {
-        switch (rankingType) {
-            case "post_count":
-                return POST_COUNT_RANKING_KEY;
-            case "post_likes":
-                return POST_LIKES_RANKING_KEY;
-            case "post_comments":
-                return POST_COMMENTS_RANKING_KEY;
-            case "composite_score":
-                return COMPOSITE_SCORE_RANKING_KEY;
-            default:
-                return COMPOSITE_SCORE_RANKING_KEY;
-        }
+    /**
+     * 排行榜条目
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class RankingEntry {
+        // 排名，从1开始
+        private final long rank;
+        private final Long userId;
+        private final double score;
     }
 } 
\ No newline at end of file
@@ -0,0 +1,469 @@
+package com.social.service;
+
+import com.social.config.RankingMemberSerializer;
+import com.social.repository.PostRepository;
+import com.social.util.RedisLease;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.DefaultTypedTuple;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static com.social.service.RankingService.COMMENTS_WEIGHT;
+import static com.social.service.RankingService.LIKES_WEIGHT;
+import static com.social.service.RankingService.POST_COUNT_WEIGHT;
+
+/**
+ * 基于Redis有序集合的排行榜引擎（默认），多个节点共享同一份排行榜
+ * 增量更新、周边排名通过Lua脚本一次网络往返完成；时间窗口排行榜由小时分桶合并而成
+ * 有序集合成员为十进制用户ID（rankingRedisTemplate），旧版本用Jackson写入的成员在启动时迁移
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "ranking.engine", havingValue = "redis", matchIfMissing = true)
+public class RedisRankingEngine implements RankingEngine {
+    
+    private final RedisTemplate<String, Long> rankingRedisTemplate;
+    private final StringRedisTemplate stringRedisTemplate;
+    
+    static final String POST_COUNT_RANKING_KEY = "ranking:post_count";
+    static final String POST_LIKES_RANKING_KEY = "ranking:post_likes";
+    static final String POST_COMMENTS_RANKING_KEY = "ranking:post_comments";
+    static final String COMPOSITE_SCORE_RANKING_KEY = "ranking:composite_score";
+    
+    // 顺序与 RankingService.RANKING_TYPES 一致
+    static final List<String> RANKING_KEYS = Arrays.asList(
+        POST_COUNT_RANKING_KEY, POST_LIKES_RANKING_KEY, POST_COMMENTS_RANKING_KEY, COMPOSITE_SCORE_RANKING_KEY);
+    
+    private static final RedisScript<Long> APPLY_DELTA_SCRIPT =
+        RedisScript.of(new ClassPathResource("scripts/ranking_apply_delta.lua"), Long.class);
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> AROUND_SCRIPT =
+        RedisScript.of(new ClassPathResource("scripts/ranking_around.lua"), List.class);
+    private static final RedisScript<Long> MIGRATE_SCRIPT =
+        RedisScript.of(new ClassPathResource("scripts/ranking_migrate_members.lua"), Long.class);
+    private static final RedisScript<Long> WINDOW_UNION_SCRIPT =
+        RedisScript.of(new ClassPathResource("scripts/ranking_window_union.lua"), Long.class);
+    private static final RedisScript<Long> SWAP_SCRIPT =
+        RedisScript.of(new ClassPathResource("scripts/ranking_swap.lua"), Long.class);
+    // 只删除属于指定重建任务的重建标记，与释放租约的逻辑相同
+    private static final RedisScript<Long> CLEAR_MARKER_SCRIPT =
+        RedisScript.of(new ClassPathResource("scripts/lease_release.lua"), Long.class);
+    
+    private static final DateTimeFormatter BUCKET_FORMATTER = DateTimeFormatter.ofPattern("yyyyMMddHH");
+    
+    private static final String SHADOW_KEY_SUFFIX = ":rebuild:";
+    
+    // 影子key的过期时间，防止重建中途宕机留下残留数据
+    private static final long SHADOW_KEY_TTL_SECONDS = 3600;
+    
+    // 重建标记，值为正在执行的重建任务ID；存在时增量更新同时写入该任务的影子key
+    static final String REBUILD_MARKER_KEY = "ranking:rebuild:active";
+    
+    // 成员格式标记，值为当前格式时不再迁移
+    private static final String CODEC_KEY = "ranking:codec";
+    private static final String CODEC_DECIMAL = "decimal";
+    // 迁移租约，迁移期间按批续约，节点宕机后租约过期由其他节点重新迁移
+    private static final String MIGRATION_LEASE_KEY = "ranking:codec:migration";
+    private static final String MIGRATION_FENCING_TOKEN_KEY = "ranking:codec:migration:fencing_token";
+    private static final long MIGRATION_LEASE_TTL_MS = 60000;
+    // 每次迁移脚本处理的旧成员数，避免长时间阻塞Redis
+    private static final int MIGRATION_BATCH_SIZE = 500;
+    
+    @Value("${ranking.window.bucket-ttl-hours:768}")
+    private long bucketTtlHours;
+    
+    @Value("${ranking.window.cache-ttl-seconds:60}")
+    private long windowCacheTtlSeconds;
+    
+    private final String nodeId = UUID.randomUUID().toString();
+    
+    /**
+     * 启动时预加载脚本，之后通过EVALSHA调用
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void preloadScripts() {
+        try {
+            for (RedisScript<?> script : Arrays.asList(APPLY_DELTA_SCRIPT, AROUND_SCRIPT, WINDOW_UNION_SCRIPT)) {
+                String sha = stringRedisTemplate.execute((RedisCallback<String>) connection ->
+                    connection.scriptingCommands().scriptLoad(stringRedisTemplate.getStringSerializer().serialize(script.getScriptAsString())));
+                log.info("排行榜脚本已加载: {}", sha);
+            }
+        } catch (Exception e) {
+            log.error("预加载排行榜脚本失败，将在首次调用时加载", e);
+        }
+    }
+    
+    /**
+     * 启动时把旧格式成员迁移为十进制用户ID，多节点同时启动时只有拿到迁移租约的节点执行
+     * 小时分桶和动态数/点赞数/评论数排行榜把旧成员分数累加到新成员上，综合评分按迁移后的三项数据重算
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrateLegacyMembers() {
+        try {
+            if (CODEC_DECIMAL.equals(stringRedisTemplate.opsForValue().get(CODEC_KEY))) {
+                return;
+            }
+            RedisLease lease = RedisLease.tryAcquire(stringRedisTemplate,
+                MIGRATION_LEASE_KEY, MIGRATION_FENCING_TOKEN_KEY, nodeId, MIGRATION_LEASE_TTL_MS);
+            if (lease == null) {
+                log.info("其他节点正在迁移排行榜成员格式");
+                return;
+            }
+            try {
+                long migrated = 0;
+                for (String key : scanKeys("ranking:*:h:*")) {
+                    migrated += migrateKey(lease, key, "sum", Collections.singletonList(key));
+                }
+                for (int i = 0; i < 3; i++) {
+                    migrated += migrateKey(lease, RANKING_KEYS.get(i), "sum", Collections.singletonList(RANKING_KEYS.get(i)));
+                }
+                List<String> compositeKeys = new ArrayList<>();
+                compositeKeys.add(COMPOSITE_SCORE_RANKING_KEY);
+                compositeKeys.addAll(RANKING_KEYS.subList(0, 3));
+                migrated += migrateKey(lease, COMPOSITE_SCORE_RANKING_KEY, "composite", compositeKeys);
+                // 时间窗口排行榜是分桶的合并结果，删除后按需重新生成
+                stringRedisTemplate.delete(scanKeys("ranking:*:w:*"));
+                
+                lease.renewIfDue();
+                stringRedisTemplate.opsForValue().set(CODEC_KEY, CODEC_DECIMAL);
+                log.info("排行榜成员格式迁移完成，共迁移{}个成员", migrated);
+            } finally {
+                lease.release();
+            }
+        } catch (Exception e) {
+            log.error("迁移排行榜成员格式失败，下次启动时重试", e);
+        }
+    }
+    
+    /**
+     * 用ZSCAN找出一个排行榜中的旧格式成员，分批交给迁移脚本改写；每批之前按需续约，租约失效时停止迁移
+     */
+    private long migrateKey(RedisLease lease, String key, String mode, List<String> scriptKeys) {
+        List<String> legacyMembers = new ArrayList<>();
+        ScanOptions options = ScanOptions.scanOptions().match("\"*").count(MIGRATION_BATCH_SIZE).build();
+        try (Cursor<ZSetOperations.TypedTuple<String>> cursor = stringRedisTemplate.opsForZSet().scan(key, options)) {
+            while (cursor.hasNext()) {
+                legacyMembers.add(cursor.next().getValue());
+            }
+        }
+        long migrated = 0;
+        for (int from = 0; from < legacyMembers.size(); from += MIGRATION_BATCH_SIZE) {
+            lease.renewIfDue();
+            List<String> args = new ArrayList<>();
+            args.add(mode);
+            args.add(String.valueOf(POST_COUNT_WEIGHT));
+            args.add(String.valueOf(LIKES_WEIGHT));
+            args.add(String.valueOf(COMMENTS_WEIGHT));
+            args.addAll(legacyMembers.subList(from, Math.min(from + MIGRATION_BATCH_SIZE, legacyMembers.size())));
+            Long count = stringRedisTemplate.execute(MIGRATE_SCRIPT, scriptKeys, args.toArray());
+            migrated += count != null ? count : 0;
+        }
+        return migrated;
+    }
+    
+    private Set<String> scanKeys(String pattern) {
+        Set<String> keys = new HashSet<>();
+        ScanOptions options = ScanOptions.scanOptions().match(pattern).count(1000).build();
+        try (Cursor<String> cursor = stringRedisTemplate.scan(options)) {
+            while (cursor.hasNext()) {
+                keys.add(cursor.next());
+            }
+        }
+        return keys;
+    }
+    
+    @Override
+    public boolean isShared() {
+        return true;
+    }
+    
+    /**
+     * 通过Lua脚本在Redis内一次完成三项增量、综合评分重算和各小时分桶的累加；全量重建期间同时累加到影子key
+     */
+    @Override
+    public long applyDeltas(long userId, long postCountDelta, long likesDelta, long commentsDelta,
+                            Map<LocalDateTime, long[]> hourlyDeltas) {
+        List<String> keys = new ArrayList<>(RANKING_KEYS);
+        keys.add(REBUILD_MARKER_KEY);
+        // 影子key作为声明的key传入，脚本内再确认标记未变化
+        String jobId = stringRedisTemplate.opsForValue().get(REBUILD_MARKER_KEY);
+        if (jobId != null) {
+            for (String key : RANKING_KEYS) {
+                keys.add(shadowKey(key, jobId));
+            }
+        }
+        List<String> args = new ArrayList<>(Arrays.asList(
+            Long.toString(userId), Long.toString(postCountDelta), Long.toString(likesDelta), Long.toString(commentsDelta),
+            String.valueOf(POST_COUNT_WEIGHT), String.valueOf(LIKES_WEIGHT), String.valueOf(COMMENTS_WEIGHT),
+            Long.toString(TimeUnit.HOURS.toSeconds(bucketTtlHours)), jobId != null ? jobId : "",
+            Long.toString(SHADOW_KEY_TTL_SECONDS)));
+        for (Map.Entry<LocalDateTime, long[]> entry : hourlyDeltas.entrySet()) {
+            String hour = entry.getKey().format(BUCKET_FORMATTER);
+            for (String key : RANKING_KEYS) {
+                keys.add(bucketKey(key, hour));
+            }
+            for (long delta : entry.getValue()) {
+                args.add(Long.toString(delta));
+            }
+        }
+        Long compositeScore = stringRedisTemplate.execute(APPLY_DELTA_SCRIPT, keys, args.toArray());
+        return compositeScore != null ? compositeScore : 0;
+    }
+    
+    @Override
+    public void setStats(long userId, long postCount, long totalLikes, long totalComments) {
+        ZSetOperations<String, Long> zSetOps = rankingRedisTemplate.opsForZSet();
+        zSetOps.add(POST_COUNT_RANKING_KEY, userId, postCount);
+        zSetOps.add(POST_LIKES_RANKING_KEY, userId, totalLikes);
+        zSetOps.add(POST_COMMENTS_RANKING_KEY, userId, totalComments);
+        zSetOps.add(COMPOSITE_SCORE_RANKING_KEY, userId,
+            RankingService.compositeScore(postCount, totalLikes, totalComments));
+    }
+    
+    /**
+     * 一次ZREVRANGE WITHSCORES完成
+     */
+    @Override
+    public List<RankingService.RankingEntry> range(String rankingType, int start, int end) {
+        return readRankingEntries(getRankingKey(rankingType), start, end);
+    }
+    
+    /**
+     * ZCARD，O(1)
+     */
+    @Override
+    public long size(String rankingType) {
+        Long size = rankingRedisTemplate.opsForZSet().zCard(getRankingKey(rankingType));
+        return size != null ? size : 0;
+    }
+    
+    @Override
+    public Long rank(String rankingType, long userId) {
+        return rankingRedisTemplate.opsForZSet().reverseRank(getRankingKey(rankingType), userId);
+    }
+    
+    /**
+     * ZMSCORE，一次往返获取整批分数
+     */
+    @Override
+    public Map<Long, Long> scores(String rankingType, List<Long> userIds) {
+        Map<Long, Long> scores = new HashMap<>();
+        if (userIds.isEmpty()) {
+            return scores;
+        }
+        List<Double> values = rankingRedisTemplate.opsForZSet().score(getRankingKey(rankingType), userIds.toArray());
+        for (int i = 0; i < userIds.size(); i++) {
+            Double value = values != null ? values.get(i) : null;
+            scores.put(userIds.get(i), value != null ? value.longValue() : 0L);
+        }
+        return scores;
+    }
+    
+    /**
+     * 邻居区间依赖用户排名，无法用管道串联，因此通过一次脚本调用完成
+     */
+    @Override
+    public Map<String, Object> around(long userId, String rankingType, int k) {
+        List<String> keys = new ArrayList<>(RANKING_KEYS);
+        keys.add(getRankingKey(rankingType));
+        
+        @SuppressWarnings("unchecked")
+        List<String> values = stringRedisTemplate.execute(AROUND_SCRIPT, keys, Long.toString(userId), Integer.toString(k));
+        if (values == null) {
+            throw new RuntimeException("获取用户周边排名失败");
+        }
+        
+        int boardCount = RANKING_KEYS.size();
+        long[] ranks = new long[boardCount];
+        long[] scores = new long[boardCount];
+        for (int i = 0; i < boardCount; i++) {
+            ranks[i] = Long.parseLong(values.get(i * 2));
+            scores[i] = (long) Double.parseDouble(values.get(i * 2 + 1));
+        }
+        
+        List<RankingService.RankingEntry> neighbours = new ArrayList<>();
+        int offset = boardCount * 2;
+        long rank = Long.parseLong(values.get(offset)) + 1;
+        for (int i = offset + 1; i + 1 < values.size(); i += 2) {
+            neighbours.add(new RankingService.RankingEntry(rank++, RankingMemberSerializer.decode(values.get(i)),
+                Double.parseDouble(values.get(i + 1))));
+        }
+        return RankingService.aroundResult(ranks, scores, neighbours);
+    }
+    
+    @Override
+    public List<RankingService.RankingEntry> windowRange(String window, String rankingType, int start, int end) {
+        return readRankingEntries(ensureWindowKey(window, rankingType), start, end);
+    }
+    
+    @Override
+    public long windowSize(String window, String rankingType) {
+        Long size = rankingRedisTemplate.opsForZSet().zCard(ensureWindowKey(window, rankingType));
+        return size != null ? size : 0;
+    }
+    
+    /**
+     * 重建数据分批写入按任务区分的影子key，提交时通过Lua脚本原子重命名为线上key
+     * 开始前写入重建标记，之后各节点写入的增量同时累加到影子key；快照覆盖的用户以快照为准，
+     * 只有快照读取前后一个刷新间隔内的增量可能多计或漏计
+     * 重建标记只在不存在时写入，已有其他任务在重建时直接失败，避免两个任务共用标记
+     */
+    @Override
+    public RebuildTarget beginRebuild(String jobId) {
+        List<String> shadowKeys = new ArrayList<>();
+        for (String key : RANKING_KEYS) {
+            shadowKeys.add(shadowKey(key, jobId));
+        }
+        Boolean marked = stringRedisTemplate.opsForValue()
+            .setIfAbsent(REBUILD_MARKER_KEY, jobId, SHADOW_KEY_TTL_SECONDS, TimeUnit.SECONDS);
+        if (!Boolean.TRUE.equals(marked)) {
+            throw new RuntimeException("其他排行榜重建任务正在执行: " + stringRedisTemplate.opsForValue().get(REBUILD_MARKER_KEY));
+        }
+        return new RebuildTarget() {
+            
+            @Override
+            public void write(List<PostRepository.UserPostStats> chunk) {
+                writeChunk(shadowKeys, chunk);
+            }
+            
+            @Override
+            public boolean commit(String leaseValue) {
+                List<String> keys = new ArrayList<>(shadowKeys);
+                keys.addAll(RANKING_KEYS);
+                keys.add(RankingLeaderElection.LEASE_KEY);
+                keys.add(REBUILD_MARKER_KEY);
+                Long swapped = stringRedisTemplate.execute(SWAP_SCRIPT, keys, leaseValue != null ? leaseValue : "", jobId);
+                return swapped != null && swapped == 1;
+            }
+            
+            @Override
+            public void abort() {
+                try {
+                    stringRedisTemplate.execute(CLEAR_MARKER_SCRIPT, Collections.singletonList(REBUILD_MARKER_KEY), jobId);
+                    stringRedisTemplate.delete(shadowKeys);
+                } catch (Exception e) {
+                    log.error("清理排行榜影子key失败: jobId={}", jobId, e);
+                }
+            }
+        };
+    }
+    
+    /**
+     * 将一批用户的统计数据写入四个影子排行榜，每个排行榜一条ZADD，四条命令通过管道一次发送
+     */
+    @SuppressWarnings("unchecked")
+    private void writeChunk(List<String> shadowKeys, List<PostRepository.UserPostStats> chunk) {
+        Set<ZSetOperations.TypedTuple<Long>> postCounts = new HashSet<>();
+        Set<ZSetOperations.TypedTuple<Long>> postLikes = new HashSet<>();
+        Set<ZSetOperations.TypedTuple<Long>> postComments = new HashSet<>();
+        Set<ZSetOperations.TypedTuple<Long>> compositeScores = new HashSet<>();
+        
+        for (PostRepository.UserPostStats stats : chunk) {
+            Long member = stats.getUserId();
+            long postCount = stats.getPostCount();
+            long totalLikes = stats.getTotalLikes();
+            long totalComments = stats.getTotalComments();
+            postCounts.add(new DefaultTypedTuple<>(member, (double) postCount));
+            postLikes.add(new DefaultTypedTuple<>(member, (double) totalLikes));
+            postComments.add(new DefaultTypedTuple<>(member, (double) totalComments));
+            compositeScores.add(new DefaultTypedTuple<>(member,
+                (double) RankingService.compositeScore(postCount, totalLikes, totalComments)));
+        }
+        
+        rankingRedisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            public <K, V> Object execute(RedisOperations<K, V> operations) {
+                ZSetOperations<String, Long> zSetOps = ((RedisOperations<String, Long>) operations).opsForZSet();
+                zSetOps.add(shadowKeys.get(0), postCounts);
+                zSetOps.add(shadowKeys.get(1), postLikes);
+                zSetOps.add(shadowKeys.get(2), postComments);
+                zSetOps.add(shadowKeys.get(3), compositeScores);
+                for (String key : shadowKeys) {
+                    operations.expire((K) key, SHADOW_KEY_TTL_SECONDS, TimeUnit.SECONDS);
+                }
+                return null;
+            }
+        });
+    }
+    
+    /**
+     * 获取时间窗口排行榜的缓存键，缓存不存在时由脚本合并窗口内的小时分桶并设置较短的过期时间
+     * 脚本内先检查缓存是否存在，缓存过期时并发的读取只合并一次
+     */
+    private String ensureWindowKey(String window, String rankingType) {
+        Integer hours = RankingService.WINDOW_HOURS.get(window);
+        if (hours == null) {
+            throw new RuntimeException("不支持的时间窗口: " + window);
+        }
+        String rankingKey = getRankingKey(rankingType);
+        String windowKey = rankingKey + ":w:" + window;
+        if (!Boolean.TRUE.equals(rankingRedisTemplate.hasKey(windowKey))) {
+            LocalDateTime now = LocalDateTime.now();
+            List<String> bucketKeys = new ArrayList<>(hours);
+            for (int i = 0; i < hours; i++) {
+                bucketKeys.add(bucketKey(rankingKey, now.minusHours(i).format(BUCKET_FORMATTER)));
+            }
+            List<String> keys = new ArrayList<>(hours + 1);
+            keys.add(windowKey);
+            keys.addAll(bucketKeys);
+            stringRedisTemplate.execute(WINDOW_UNION_SCRIPT, keys, Long.toString(windowCacheTtlSeconds));
+        }
+        return windowKey;
+    }
+    
+    private List<RankingService.RankingEntry> readRankingEntries(String key, int start, int end) {
+        List<RankingService.RankingEntry> entries = new ArrayList<>();
+        Set<ZSetOperations.TypedTuple<Long>> tuples = rankingRedisTemplate.opsForZSet().reverseRangeWithScores(key, start, end);
+        if (tuples != null) {
+            long rank = start + 1;
+            for (ZSetOperations.TypedTuple<Long> tuple : tuples) {
+                if (tuple.getValue() != null) {
+                    Double score = tuple.getScore();
+                    entries.add(new RankingService.RankingEntry(rank, tuple.getValue(), score != null ? score : 0));
+                }
+                rank++;
+            }
+        }
+        return entries;
+    }
+    
+    private static String bucketKey(String rankingKey, String hour) {
+        return rankingKey + ":h:" + hour;
+    }
+    
+    private static String shadowKey(String rankingKey, String jobId) {
+        return rankingKey + SHADOW_KEY_SUFFIX + jobId;
+    }
+    
+    private static String getRankingKey(String rankingType) {
+        return RANKING_KEYS.get(RankingService.boardIndex(rankingType));
+    }
+} 
\ No newline at end of file
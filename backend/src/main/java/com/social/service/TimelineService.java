@@ -0,0 +1,307 @@
+package com.social.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.social.entity.Follow;
+import com.social.entity.Post;
+import com.social.repository.FollowRepository;
+import com.social.repository.PostRepository;
+import com.social.repository.UserRepository;
+import com.social.util.TransactionUtils;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.redis.connection.RedisPipelineException;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.DefaultTypedTuple;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 首页时间线
+ * 每个用户的时间线是Redis有序集合 timeline:{userId}，成员和分数都是动态ID（ID递增，按ID倒序即按发布顺序倒序），容量有上限
+ * 发布动态后在后台线程中推送到粉丝的时间线（写扩散），只推送给时间线仍存在的近期活跃用户；等待推送的队列有上限，
+ * 队列满时由发布动态的线程直接推送，停机时等待队列中的推送完成；关注、取消关注后的时间线合并和移除也在同一后台线程中执行；
+ * 粉丝数达到阈值的大V不推送，读取时间线时再按ID拉取其动态合并（读扩散），避免一条动态产生大量写入
+ * 时间线过期或不存在时从关注关系重建
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class TimelineService {
+    
+    private final RedisTemplate<String, Long> longRedisTemplate;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final FollowRepository followRepository;
+    private final PostRepository postRepository;
+    private final UserRepository userRepository;
+    
+    private static final String TIMELINE_KEY_PREFIX = "timeline:";
+    
+    // 时间线占位成员（分数0），关注列表为空的用户时间线也存在，不会每次读取都重建
+    private static final long PLACEHOLDER_MEMBER = 0L;
+    
+    // 每次推送的粉丝数量，也是重建时每次查询的关注用户数量
+    private static final int BATCH_SIZE = 500;
+    
+    // 等待后台执行的时间线任务（动态推送、关注变更）数量上限，队列满时由提交任务的线程直接执行
+    private static final int TIMELINE_QUEUE_CAPACITY = 10000;
+    
+    // 停机时等待队列中的推送完成的最长时间
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 30;
+    
+    private static final RedisScript<Long> FANOUT_SCRIPT =
+        RedisScript.of(new ClassPathResource("scripts/timeline_fanout.lua"), Long.class);
+    
+    @Value("${timeline.capacity:800}")
+    private int capacity;
+    
+    @Value("${timeline.ttl-hours:72}")
+    private long ttlHours;
+    
+    @Value("${timeline.celebrity-follower-threshold:10000}")
+    private int celebrityThreshold;
+    
+    private final ThreadPoolExecutor timelineExecutor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<>(TIMELINE_QUEUE_CAPACITY), r -> new Thread(r, "timeline-worker"),
+        new ThreadPoolExecutor.CallerRunsPolicy());
+    
+    // 用户关注的大V列表，读取时间线时使用；本节点关注关系变化时失效
+    private final Cache<Long, List<Long>> followedCelebrities = Caffeine.newBuilder()
+        .maximumSize(100000)
+        .expireAfterWrite(60, TimeUnit.SECONDS)
+        .build();
+    
+    /**
+     * 动态发布后调用，事务提交后在后台推送到作者和粉丝的时间线
+     */
+    public void onPostCreated(Post post) {
+        Long authorId = post.getUserId();
+        Long postId = post.getId();
+        TransactionUtils.runAfterCommit(() -> timelineExecutor.submit(() -> fanOut(authorId, postId)));
+    }
+    
+    /**
+     * 关注后调用：事务提交后在后台把被关注者最近的动态并入关注者的时间线（大V的动态在读取时拉取）
+     */
+    public void onFollow(Long followerId, Long followingId) {
+        TransactionUtils.runAfterCommit(() -> {
+            followedCelebrities.invalidate(followerId);
+            timelineExecutor.submit(() -> mergeFollowing(followerId, followingId));
+        });
+    }
+    
+    /**
+     * 取消关注后调用：事务提交后在后台从关注者的时间线中移除被取消关注者的动态
+     */
+    public void onUnfollow(Long followerId, Long followingId) {
+        TransactionUtils.runAfterCommit(() -> {
+            followedCelebrities.invalidate(followerId);
+            timelineExecutor.submit(() -> removeFollowing(followerId, followingId));
+        });
+    }
+    
+    /**
+     * 获取首页时间线中ID小于beforeId的最新count条动态ID（按ID倒序），合并推送的动态和拉取的大V动态
+     */
+    public List<Long> getTimelinePostIds(Long userId, long beforeId, int count) {
+        String key = timelineKey(userId);
+        if (!Boolean.TRUE.equals(stringRedisTemplate.hasKey(key))) {
+            rebuild(userId);
+        }
+        stringRedisTemplate.expire(key, ttlHours, TimeUnit.HOURS);
+        
+        TreeSet<Long> merged = new TreeSet<>(Collections.reverseOrder());
+        Set<Long> pushed = longRedisTemplate.opsForZSet().reverseRangeByScore(key, 1, beforeId - 1, 0, count);
+        if (pushed != null) {
+            merged.addAll(pushed);
+        }
+        
+        List<Long> celebrityIds = followedCelebrities.get(userId,
+            id -> followRepository.findFollowingIdsWithFollowersAtLeast(id, celebrityThreshold));
+        if (!celebrityIds.isEmpty()) {
+            merged.addAll(postRepository.findIdsByUserIdInBeforeId(celebrityIds, beforeId, PageRequest.of(0, count)));
+        }
+        
+        List<Long> postIds = new ArrayList<>(count);
+        for (Long postId : merged) {
+            if (postIds.size() == count) {
+                break;
+            }
+            postIds.add(postId);
+        }
+        return postIds;
+    }
+    
+    /**
+     * 从时间线中移除已不存在的动态
+     */
+    public void removePosts(Long userId, Collection<Long> postIds) {
+        if (postIds.isEmpty()) {
+            return;
+        }
+        try {
+            longRedisTemplate.opsForZSet().remove(timelineKey(userId), postIds.toArray());
+        } catch (Exception e) {
+            log.error("移除时间线动态失败: userId={}, postIds={}", userId, postIds, e);
+        }
+    }
+    
+    /**
+     * 停机时不再接收新的任务，等待队列中已提交的推送和关注变更处理完成
+     */
+    @PreDestroy
+    public void shutdown() {
+        timelineExecutor.shutdown();
+        try {
+            if (!timelineExecutor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                List<Runnable> dropped = timelineExecutor.shutdownNow();
+                log.warn("停机时仍有{}条动态未推送到粉丝时间线，粉丝下次重建时间线时补齐", dropped.size());
+            }
+        } catch (InterruptedException e) {
+            timelineExecutor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    private void mergeFollowing(Long followerId, Long followingId) {
+        try {
+            String key = timelineKey(followerId);
+            if (!Boolean.TRUE.equals(stringRedisTemplate.hasKey(key)) || isCelebrity(followingId)) {
+                return;
+            }
+            List<Long> postIds = postRepository.findIdsByUserIdIn(
+                Collections.singletonList(followingId), PageRequest.of(0, capacity));
+            addToTimeline(key, postIds);
+        } catch (Exception e) {
+            log.error("合并被关注者动态到时间线失败: followerId={}, followingId={}", followerId, followingId, e);
+        }
+    }
+    
+    private void removeFollowing(Long followerId, Long followingId) {
+        try {
+            List<Long> postIds = postRepository.findIdsByUserIdIn(
+                Collections.singletonList(followingId), PageRequest.of(0, capacity));
+            if (!postIds.isEmpty()) {
+                longRedisTemplate.opsForZSet().remove(timelineKey(followerId), postIds.toArray());
+            }
+        } catch (Exception e) {
+            log.error("从时间线移除被取消关注者动态失败: followerId={}, followingId={}", followerId, followingId, e);
+        }
+    }
+    
+    /**
+     * 推送动态：作者自己的时间线总是推送；非大V按关注记录ID分批推送给粉丝
+     */
+    private void fanOut(Long authorId, Long postId) {
+        try {
+            pushToTimelines(Collections.singletonList(timelineKey(authorId)), postId);
+            if (isCelebrity(authorId)) {
+                return;
+            }
+            long afterId = 0;
+            int followers = 0;
+            while (true) {
+                List<Follow> batch = followRepository.findFollowersAfter(authorId, afterId, PageRequest.of(0, BATCH_SIZE));
+                if (batch.isEmpty()) {
+                    break;
+                }
+                List<String> keys = new ArrayList<>(batch.size());
+                for (Follow follow : batch) {
+                    keys.add(timelineKey(follow.getFollowerId()));
+                }
+                pushToTimelines(keys, postId);
+                followers += batch.size();
+                afterId = batch.get(batch.size() - 1).getId();
+            }
+            log.debug("动态推送完成: postId={}, followers={}", postId, followers);
+        } catch (Exception e) {
+            log.error("动态推送失败: authorId={}, postId={}", authorId, postId, e);
+        }
+    }
+    
+    /**
+     * 每个时间线单独执行一次脚本并通过管道批量发送，各时间线可以位于Redis集群的不同槽位
+     * 管道中脚本未加载（NOSCRIPT）时逐个执行，由脚本执行器加载脚本
+     */
+    private void pushToTimelines(List<String> keys, Long postId) {
+        byte[] postIdArg = String.valueOf(postId).getBytes(StandardCharsets.UTF_8);
+        byte[] capacityArg = String.valueOf(capacity).getBytes(StandardCharsets.UTF_8);
+        try {
+            stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (String key : keys) {
+                    connection.scriptingCommands().evalSha(FANOUT_SCRIPT.getSha1(), ReturnType.INTEGER, 1,
+                        key.getBytes(StandardCharsets.UTF_8), postIdArg, capacityArg);
+                }
+                return null;
+            });
+        } catch (RedisPipelineException e) {
+            for (String key : keys) {
+                stringRedisTemplate.execute(FANOUT_SCRIPT, Collections.singletonList(key),
+                    String.valueOf(postId), String.valueOf(capacity));
+            }
+        }
+    }
+    
+    /**
+     * 重建时间线：分批查询关注用户和自己的最新动态，保留最新的capacity条
+     */
+    private void rebuild(Long userId) {
+        List<Long> authorIds = new ArrayList<>(followRepository.findFollowingIds(userId));
+        authorIds.add(userId);
+        
+        TreeSet<Long> latest = new TreeSet<>(Collections.reverseOrder());
+        for (int from = 0; from < authorIds.size(); from += BATCH_SIZE) {
+            List<Long> batch = authorIds.subList(from, Math.min(from + BATCH_SIZE, authorIds.size()));
+            latest.addAll(postRepository.findIdsByUserIdIn(batch, PageRequest.of(0, capacity)));
+            while (latest.size() > capacity) {
+                latest.pollLast();
+            }
+        }
+        latest.add(PLACEHOLDER_MEMBER);
+        addToTimeline(timelineKey(userId), latest);
+    }
+    
+    private void addToTimeline(String key, Collection<Long> postIds) {
+        if (postIds.isEmpty()) {
+            return;
+        }
+        Set<ZSetOperations.TypedTuple<Long>> tuples = new HashSet<>();
+        for (Long postId : postIds) {
+            tuples.add(new DefaultTypedTuple<>(postId, postId.doubleValue()));
+        }
+        longRedisTemplate.opsForZSet().add(key, tuples);
+        Long size = longRedisTemplate.opsForZSet().zCard(key);
+        if (size != null && size > capacity) {
+            longRedisTemplate.opsForZSet().removeRange(key, 0, size - capacity - 1);
+        }
+    }
+    
+    private boolean isCelebrity(Long userId) {
+        Integer followerCount = userRepository.findFollowerCountById(userId);
+        return followerCount != null && followerCount >= celebrityThreshold;
+    }
+    
+    private static String timelineKey(Long userId) {
+        return TIMELINE_KEY_PREFIX + userId;
+    }
+} 
\ No newline at end of file
@@ -0,0 +1,141 @@
+package com.social.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.social.entity.User;
+import com.social.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * 用户信息批量加载
+ * 动态、评论、通知等列表先收集去重后的用户ID，用一次 findAllById 查询全部作者，
+ * 同一作者在一页内共用一份不可变的用户摘要，避免逐条查询用户
+ * 用户摘要缓存在进程内（Caffeine，按容量淘汰并设置过期时间），只有未命中的用户才查询数据库；
+ * 用户信息修改后由调用方失效本节点缓存，其他节点最多在过期时间后读到新值
+ */
+@Service
+public class UserSummaryService {
+    
+    private final UserRepository userRepository;
+    
+    private final Cache<Long, Map<String, Object>> summaryCache;
+    
+    public UserSummaryService(UserRepository userRepository,
+                              @Value("${users.summary-cache.maximum-size:10000}") long maximumSize,
+                              @Value("${users.summary-cache.ttl-seconds:300}") long ttlSeconds) {
+        this.userRepository = userRepository;
+        this.summaryCache = Caffeine.newBuilder()
+            .maximumSize(maximumSize)
+            .expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+            .recordStats()
+            .build();
+    }
+    
+    /**
+     * 批量获取用户，不存在的用户不包含在结果中
+     */
+    public Map<Long, User> getUsers(Collection<Long> userIds) {
+        Set<Long> distinctIds = distinct(userIds);
+        if (distinctIds.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        Map<Long, User> users = new HashMap<>();
+        for (User user : userRepository.findAllById(distinctIds)) {
+            users.put(user.getId(), user);
+        }
+        return users;
+    }
+    
+    /**
+     * 批量获取用户摘要（id、username、nickname、avatar、bio），摘要不可修改
+     * 缓存未命中的用户合并为一次查询，不存在的用户不缓存
+     */
+    public Map<Long, Map<String, Object>> getSummaries(Collection<Long> userIds) {
+        Set<Long> distinctIds = distinct(userIds);
+        if (distinctIds.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        return summaryCache.getAll(distinctIds, missingIds -> {
+            List<Long> ids = new ArrayList<>();
+            missingIds.forEach(ids::add);
+            Map<Long, Map<String, Object>> loaded = new HashMap<>();
+            for (User user : userRepository.findAllById(ids)) {
+                loaded.put(user.getId(), toSummary(user));
+            }
+            return loaded;
+        });
+    }
+    
+    /**
+     * 用户信息修改或新用户注册后失效缓存的摘要
+     */
+    public void invalidate(Long userId) {
+        summaryCache.invalidate(userId);
+    }
+    
+    /**
+     * 摘要缓存统计：命中数、未命中数、命中率、淘汰数、当前条目数
+     */
+    public Map<String, Object> getCacheStats() {
+        CacheStats stats = summaryCache.stats();
+        Map<String, Object> result = new HashMap<>();
+        result.put("hitCount", stats.hitCount());
+        result.put("missCount", stats.missCount());
+        result.put("hitRate", stats.hitRate());
+        result.put("evictionCount", stats.evictionCount());
+        result.put("loadCount", stats.loadCount());
+        result.put("estimatedSize", summaryCache.estimatedSize());
+        return result;
+    }
+    
+    /**
+     * 为一组对象填充作者摘要：userIdGetter取出作者ID，setter写入摘要；作者不存在时不写入
+     */
+    public <T> void attachSummaries(Collection<T> items, Function<T, Long> userIdGetter,
+                                    BiConsumer<T, Map<String, Object>> setter) {
+        if (items.isEmpty()) {
+            return;
+        }
+        Set<Long> userIds = new LinkedHashSet<>();
+        for (T item : items) {
+            userIds.add(userIdGetter.apply(item));
+        }
+        Map<Long, Map<String, Object>> summaries = getSummaries(userIds);
+        for (T item : items) {
+            Map<String, Object> summary = summaries.get(userIdGetter.apply(item));
+            if (summary != null) {
+                setter.accept(item, summary);
+            }
+        }
+    }
+    
+    private static Map<String, Object> toSummary(User user) {
+        Map<String, Object> summary = new HashMap<>();
+        summary.put("id", user.getId());
+        summary.put("username", user.getUsername());
+        summary.put("nickname", user.getNickname());
+        summary.put("avatar", user.getAvatar());
+        summary.put("bio", user.getBio());
+        return Collections.unmodifiableMap(summary);
+    }
+    
+    private static Set<Long> distinct(Collection<Long> userIds) {
+        Set<Long> distinctIds = new LinkedHashSet<>(userIds);
+        distinctIds.remove(null);
+        return distinctIds;
+    }
+} 
\ No newline at end of file
@@ -0,0 +1,21 @@
+package com.social.util;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * 游标分页结果，不包含总数；nextCursor为空表示没有下一页
+ */
+@Getter
+@AllArgsConstructor
+public class CursorPage<T> {
+    
+    private final List<T> content;
+    private final String nextCursor;
+    
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+} 
\ No newline at end of file
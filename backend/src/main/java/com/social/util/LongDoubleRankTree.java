@@ -0,0 +1,399 @@
+package com.social.util;
+
+import java.util.Arrays;
+
+/**
+ * 按分数降序排列的顺序统计树（long成员 -> double分数）
+ * 基于数组实现的Treap，节点和成员索引都使用基本类型数组，不产生装箱对象
+ * 按成员更新、删除、查询排名以及按排名取成员均为 O(log N)；分数相同时成员值大的排在前面
+ * 非线程安全，由调用方加锁
+ */
+public class LongDoubleRankTree {
+    
+    // 0号节点作为空节点，大小恒为0
+    private static final int NIL = 0;
+    
+    private long[] members;
+    private double[] scores;
+    private int[] left;
+    private int[] right;
+    private int[] sizes;
+    private int[] priorities;
+    
+    private int root = NIL;
+    // 已分配过的最大节点编号
+    private int allocated;
+    // 已释放节点组成的链表，通过left数组串联
+    private int freeHead = NIL;
+    private int randomSeed = 0x2545F491;
+    
+    // 拆分结果，避免递归时返回多个值而创建对象
+    private int splitLeft;
+    private int splitRight;
+    
+    private final MemberIndex index;
+    
+    public LongDoubleRankTree() {
+        this(16);
+    }
+    
+    public LongDoubleRankTree(int initialCapacity) {
+        int capacity = Math.max(initialCapacity, 2) + 1;
+        members = new long[capacity];
+        scores = new double[capacity];
+        left = new int[capacity];
+        right = new int[capacity];
+        sizes = new int[capacity];
+        priorities = new int[capacity];
+        index = new MemberIndex(capacity);
+    }
+    
+    /**
+     * 成员数量
+     */
+    public int size() {
+        return sizes[root];
+    }
+    
+    public boolean contains(long member) {
+        return index.get(member) != NIL;
+    }
+    
+    /**
+     * 获取成员分数，成员不存在时返回defaultValue
+     */
+    public double score(long member, double defaultValue) {
+        int node = index.get(member);
+        return node != NIL ? scores[node] : defaultValue;
+    }
+    
+    /**
+     * 设置成员分数，成员不存在时插入
+     */
+    public void put(long member, double score) {
+        int node = index.get(member);
+        if (node != NIL) {
+            if (Double.compare(scores[node], score) == 0) {
+                return;
+            }
+            root = detach(root, node);
+        } else {
+            node = allocate(member);
+            index.put(member, node);
+        }
+        scores[node] = score;
+        left[node] = NIL;
+        right[node] = NIL;
+        sizes[node] = 1;
+        root = insert(root, node);
+    }
+    
+    /**
+     * 在成员当前分数上累加增量并返回新分数，成员不存在时从0开始
+     */
+    public double increment(long member, double delta) {
+        double score = score(member, 0) + delta;
+        put(member, score);
+        return score;
+    }
+    
+    /**
+     * 删除成员
+     */
+    public boolean remove(long member) {
+        int node = index.remove(member);
+        if (node == NIL) {
+            return false;
+        }
+        root = detach(root, node);
+        left[node] = freeHead;
+        freeHead = node;
+        return true;
+    }
+    
+    /**
+     * 成员排名（从0开始，分数最高者为0），成员不存在时返回-1
+     */
+    public int rank(long member) {
+        int node = index.get(member);
+        if (node == NIL) {
+            return -1;
+        }
+        int rank = 0;
+        int current = root;
+        while (current != node) {
+            if (before(node, current)) {
+                current = left[current];
+            } else {
+                rank += sizes[left[current]] + 1;
+                current = right[current];
+            }
+        }
+        return rank + sizes[left[node]];
+    }
+    
+    /**
+     * 获取指定排名的成员
+     */
+    public long memberAt(int rank) {
+        return members[select(rank)];
+    }
+    
+    /**
+     * 获取指定排名的分数
+     */
+    public double scoreAt(int rank) {
+        return scores[select(rank)];
+    }
+    
+    /**
+     * 清空所有成员
+     */
+    public void clear() {
+        root = NIL;
+        allocated = 0;
+        freeHead = NIL;
+        index.clear();
+    }
+    
+    private int select(int rank) {
+        if (rank < 0 || rank >= size()) {
+            throw new IndexOutOfBoundsException("rank: " + rank + ", size: " + size());
+        }
+        int current = root;
+        while (true) {
+            int leftSize = sizes[left[current]];
+            if (rank < leftSize) {
+                current = left[current];
+            } else if (rank == leftSize) {
+                return current;
+            } else {
+                rank -= leftSize + 1;
+                current = right[current];
+            }
+        }
+    }
+    
+    /**
+     * a是否排在b前面：分数高的在前，分数相同时成员值大的在前
+     */
+    private boolean before(int a, int b) {
+        int compare = Double.compare(scores[a], scores[b]);
+        return compare > 0 || (compare == 0 && members[a] > members[b]);
+    }
+    
+    private int insert(int tree, int node) {
+        if (tree == NIL) {
+            return node;
+        }
+        if (priorities[node] > priorities[tree]) {
+            split(tree, node);
+            left[node] = splitLeft;
+            right[node] = splitRight;
+            update(node);
+            return node;
+        }
+        if (before(node, tree)) {
+            left[tree] = insert(left[tree], node);
+        } else {
+            right[tree] = insert(right[tree], node);
+        }
+        update(tree);
+        return tree;
+    }
+    
+    /**
+     * 把子树拆分为排在node之前的部分（splitLeft）和其余部分（splitRight）
+     */
+    private void split(int tree, int node) {
+        if (tree == NIL) {
+            splitLeft = NIL;
+            splitRight = NIL;
+            return;
+        }
+        if (before(tree, node)) {
+            split(right[tree], node);
+            right[tree] = splitLeft;
+            update(tree);
+            splitLeft = tree;
+        } else {
+            split(left[tree], node);
+            left[tree] = splitRight;
+            update(tree);
+            splitRight = tree;
+        }
+    }
+    
+    private int detach(int tree, int node) {
+        if (tree == node) {
+            return merge(left[tree], right[tree]);
+        }
+        if (before(node, tree)) {
+            left[tree] = detach(left[tree], node);
+        } else {
+            right[tree] = detach(right[tree], node);
+        }
+        update(tree);
+        return tree;
+    }
+    
+    private int merge(int a, int b) {
+        if (a == NIL) {
+            return b;
+        }
+        if (b == NIL) {
+            return a;
+        }
+        if (priorities[a] > priorities[b]) {
+            right[a] = merge(right[a], b);
+            update(a);
+            return a;
+        }
+        left[b] = merge(a, left[b]);
+        update(b);
+        return b;
+    }
+    
+    private void update(int node) {
+        sizes[node] = sizes[left[node]] + sizes[right[node]] + 1;
+    }
+    
+    private int allocate(long member) {
+        int node;
+        if (freeHead != NIL) {
+            node = freeHead;
+            freeHead = left[node];
+        } else {
+            node = ++allocated;
+            if (node >= members.length) {
+                grow();
+            }
+        }
+        members[node] = member;
+        priorities[node] = nextPriority();
+        return node;
+    }
+    
+    private void grow() {
+        int capacity = members.length * 2;
+        members = Arrays.copyOf(members, capacity);
+        scores = Arrays.copyOf(scores, capacity);
+        left = Arrays.copyOf(left, capacity);
+        right = Arrays.copyOf(right, capacity);
+        sizes = Arrays.copyOf(sizes, capacity);
+        priorities = Arrays.copyOf(priorities, capacity);
+    }
+    
+    private int nextPriority() {
+        // xorshift随机数，Treap的期望深度为 O(log N)
+        int x = randomSeed;
+        x ^= x << 13;
+        x ^= x >>> 17;
+        x ^= x << 5;
+        randomSeed = x;
+        return x;
+    }
+    
+    /**
+     * 成员到节点编号的开放寻址哈希表（线性探测），节点编号0表示空槽
+     */
+    private static final class MemberIndex {
+        
+        private long[] keys;
+        private int[] values;
+        private int count;
+        private int mask;
+        
+        MemberIndex(int expectedSize) {
+            int capacity = Integer.highestOneBit(Math.max(expectedSize * 2, 4) - 1) << 1;
+            keys = new long[capacity];
+            values = new int[capacity];
+            mask = capacity - 1;
+        }
+        
+        int get(long key) {
+            int slot = slot(key);
+            while (values[slot] != NIL) {
+                if (keys[slot] == key) {
+                    return values[slot];
+                }
+                slot = (slot + 1) & mask;
+            }
+            return NIL;
+        }
+        
+        void put(long key, int value) {
+            if ((count + 1) * 2 > keys.length) {
+                rehash(keys.length * 2);
+            }
+            int slot = slot(key);
+            while (values[slot] != NIL) {
+                if (keys[slot] == key) {
+                    values[slot] = value;
+                    return;
+                }
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+            values[slot] = value;
+            count++;
+        }
+        
+        int remove(long key) {
+            int slot = slot(key);
+            while (values[slot] != NIL) {
+                if (keys[slot] == key) {
+                    int value = values[slot];
+                    shiftBack(slot);
+                    count--;
+                    return value;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return NIL;
+        }
+        
+        void clear() {
+            Arrays.fill(values, NIL);
+            count = 0;
+        }
+        
+        /**
+         * 删除后把同一探测链上的后续元素前移，保证查找不会提前遇到空槽
+         */
+        private void shiftBack(int slot) {
+            int gap = slot;
+            int current = (slot + 1) & mask;
+            while (values[current] != NIL) {
+                int home = slot(keys[current]);
+                // home不在(gap, current]区间内时，元素可以移到gap
+                if (((current - home) & mask) >= ((current - gap) & mask)) {
+                    keys[gap] = keys[current];
+                    values[gap] = values[current];
+                    gap = current;
+                }
+                current = (current + 1) & mask;
+            }
+            values[gap] = NIL;
+        }
+        
+        private void rehash(int capacity) {
+            long[] oldKeys = keys;
+            int[] oldValues = values;
+            keys = new long[capacity];
+            values = new int[capacity];
+            mask = capacity - 1;
+            count = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldValues[i] != NIL) {
+                    put(oldKeys[i], oldValues[i]);
+                }
+            }
+        }
+        
+        private int slot(long key) {
+            long hash = key * 0x9E3779B97F4A7C15L;
+            return (int) (hash ^ (hash >>> 32)) & mask;
+        }
+    }
+} 
\ No newline at end of file
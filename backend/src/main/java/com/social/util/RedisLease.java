@@ -0,0 +1,80 @@
+package com.social.util;
+
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Redis租约：值为"持有者ID:fencing token"并带过期时间，只有持有者能续约和释放
+ * 用于同一时间只允许一个节点执行的后台任务，任务执行期间调用renewIfDue定期续约
+ */
+public final class RedisLease {
+    
+    private static final RedisScript<Long> ACQUIRE_SCRIPT =
+        RedisScript.of(new ClassPathResource("scripts/lease_acquire.lua"), Long.class);
+    private static final RedisScript<Long> RENEW_SCRIPT =
+        RedisScript.of(new ClassPathResource("scripts/lease_renew.lua"), Long.class);
+    private static final RedisScript<Long> RELEASE_SCRIPT =
+        RedisScript.of(new ClassPathResource("scripts/lease_release.lua"), Long.class);
+    
+    private final StringRedisTemplate stringRedisTemplate;
+    private final String leaseKey;
+    private final String value;
+    private final long ttlMs;
+    private long renewAtNanos;
+    
+    private RedisLease(StringRedisTemplate stringRedisTemplate, String leaseKey, String value, long ttlMs) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.leaseKey = leaseKey;
+        this.value = value;
+        this.ttlMs = ttlMs;
+        this.renewAtNanos = nextRenewAt();
+    }
+    
+    /**
+     * 尝试获取租约，其他持有者的租约未过期时返回null
+     */
+    public static RedisLease tryAcquire(StringRedisTemplate stringRedisTemplate, String leaseKey,
+                                        String fencingTokenKey, String ownerId, long ttlMs) {
+        Long token = stringRedisTemplate.execute(ACQUIRE_SCRIPT,
+            Arrays.asList(leaseKey, fencingTokenKey), ownerId, String.valueOf(ttlMs));
+        if (token == null || token <= 0) {
+            return null;
+        }
+        return new RedisLease(stringRedisTemplate, leaseKey, ownerId + ":" + token, ttlMs);
+    }
+    
+    public String getValue() {
+        return value;
+    }
+    
+    /**
+     * 距上次获取或续约超过租约时长的三分之一时续约；租约已失效时抛出异常，调用方应停止执行
+     */
+    public void renewIfDue() {
+        if (System.nanoTime() < renewAtNanos) {
+            return;
+        }
+        Long renewed = stringRedisTemplate.execute(RENEW_SCRIPT,
+            Collections.singletonList(leaseKey), value, String.valueOf(ttlMs));
+        if (renewed == null || renewed != 1) {
+            throw new RuntimeException("租约已失效: " + leaseKey + "=" + value);
+        }
+        renewAtNanos = nextRenewAt();
+    }
+    
+    /**
+     * 释放租约，已不是持有者时不做任何操作
+     */
+    public void release() {
+        stringRedisTemplate.execute(RELEASE_SCRIPT, Collections.singletonList(leaseKey), value);
+    }
+    
+    private long nextRenewAt() {
+        return System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ttlMs) / 3;
+    }
+} 
\ No newline at end of file
@@ -0,0 +1,10 @@
+-- 评论点赞写入数据库后，按实际写入的点赞数增量扣减共享的待写入点赞数差值，差值归零时删除，并确认本批切换已写入
+-- KEYS[1] 待写入点赞数差值（哈希，评论ID -> 差值）, KEYS[2] 正在写入的切换
+-- ARGV 依次为评论ID、已写入数据库的点赞数增量
+for i = 1, #ARGV, 2 do
+    if redis.call('HINCRBY', KEYS[1], ARGV[i], -tonumber(ARGV[i + 1])) == 0 then
+        redis.call('HDEL', KEYS[1], ARGV[i])
+    end
+end
+redis.call('DEL', KEYS[2])
+return #ARGV / 2
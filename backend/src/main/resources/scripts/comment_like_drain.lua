@@ -0,0 +1,13 @@
+-- 取出一批待写入数据库的评论点赞切换（成员为 用户ID:评论ID）
+-- KEYS[1] 待写入的切换, KEYS[2] 正在写入的切换
+-- ARGV[1] 每批最多取出的数量
+-- 上一批尚未确认写入（写入失败或节点宕机）时重新返回上一批；否则从待写入集合弹出一批，移入正在写入的集合，
+-- 确认写入后才删除，取出后节点宕机不会丢失切换
+if redis.call('EXISTS', KEYS[2]) == 1 then
+    return redis.call('SMEMBERS', KEYS[2])
+end
+local members = redis.call('SPOP', KEYS[1], ARGV[1])
+if #members > 0 then
+    redis.call('SADD', KEYS[2], unpack(members))
+end
+return members
@@ -0,0 +1,22 @@
+-- 清除已没有未写入切换的评论的点赞数差值
+-- KEYS[1] 待写入点赞数差值（哈希，评论ID -> 差值）, KEYS[2] 待写入的切换, KEYS[3] 正在写入的切换
+-- ARGV[1] 未写入切换数量上限，超过时不检查并返回-1，避免长时间阻塞Redis
+-- 差值只来自尚未写入数据库的切换，评论没有未写入的切换时差值应为0；
+-- 数据库已提交但扣减差值失败等情况残留的差值在这里清除，返回清除的评论数
+if redis.call('SCARD', KEYS[2]) + redis.call('SCARD', KEYS[3]) > tonumber(ARGV[1]) then
+    return -1
+end
+local dirtyComments = {}
+for i = 2, 3 do
+    for _, member in ipairs(redis.call('SMEMBERS', KEYS[i])) do
+        dirtyComments[string.match(member, ':(%d+)$')] = true
+    end
+end
+local cleared = 0
+for _, commentId in ipairs(redis.call('HKEYS', KEYS[1])) do
+    if not dirtyComments[commentId] then
+        redis.call('HDEL', KEYS[1], commentId)
+        cleared = cleared + 1
+    end
+end
+return cleared
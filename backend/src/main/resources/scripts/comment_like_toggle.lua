@@ -0,0 +1,21 @@
+-- 切换用户对一条评论的点赞状态，累加各节点共享的待写入点赞数差值，并登记待写入数据库的切换
+-- KEYS[1] 用户点赞过的评论集合, KEYS[2] 待写入点赞数差值（哈希，评论ID -> 差值）, KEYS[3] 待写入的切换（集合，成员为 用户ID:评论ID）
+-- ARGV[1] 评论ID, ARGV[2] 集合过期时间（秒）, ARGV[3] 待写入切换的成员
+-- 集合不存在（未从数据库加载）时返回-1，由调用方加载后重试；返回1表示点赞，0表示取消点赞
+if redis.call('EXISTS', KEYS[1]) == 0 then
+    return -1
+end
+local liked
+if redis.call('SREM', KEYS[1], ARGV[1]) == 1 then
+    liked = 0
+else
+    redis.call('SADD', KEYS[1], ARGV[1])
+    liked = 1
+end
+redis.call('EXPIRE', KEYS[1], ARGV[2])
+-- 写入数据库前点赞又被取消时差值归零，直接删除
+if redis.call('HINCRBY', KEYS[2], ARGV[1], liked == 1 and 1 or -1) == 0 then
+    redis.call('HDEL', KEYS[2], ARGV[1])
+end
+redis.call('SADD', KEYS[3], ARGV[3])
+return liked
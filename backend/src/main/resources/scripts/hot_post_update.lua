@@ -0,0 +1,9 @@
+-- 写入动态热度并把热门动态集合裁剪到容量上限（淘汰热度最低的动态）
+-- KEYS[1] 热门动态有序集合
+-- ARGV[1] 热度分数, ARGV[2] 动态ID, ARGV[3] 容量上限
+redis.call('ZADD', KEYS[1], ARGV[1], ARGV[2])
+local capacity = tonumber(ARGV[3])
+if redis.call('ZCARD', KEYS[1]) > capacity then
+    redis.call('ZREMRANGEBYRANK', KEYS[1], 0, -capacity - 1)
+end
+return 1
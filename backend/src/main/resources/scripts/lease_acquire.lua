@@ -0,0 +1,9 @@
+-- 获取租约：租约不存在时生成新的fencing token并写入租约
+-- KEYS[1] 租约key, KEYS[2] fencing token计数器
+-- ARGV[1] 节点ID, ARGV[2] 租约时长(毫秒)
+if redis.call('EXISTS', KEYS[1]) == 1 then
+    return 0
+end
+local token = redis.call('INCR', KEYS[2])
+redis.call('SET', KEYS[1], ARGV[1] .. ':' .. token, 'PX', ARGV[2])
+return token
@@ -0,0 +1,7 @@
+-- 释放租约：只删除属于当前持有者的租约
+-- KEYS[1] 租约key
+-- ARGV[1] 租约值(节点ID:token)
+if redis.call('GET', KEYS[1]) == ARGV[1] then
+    return redis.call('DEL', KEYS[1])
+end
+return 0
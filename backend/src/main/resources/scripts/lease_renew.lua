@@ -0,0 +1,7 @@
+-- 续约：租约仍属于当前持有者时延长过期时间
+-- KEYS[1] 租约key
+-- ARGV[1] 租约值(节点ID:token), ARGV[2] 租约时长(毫秒)
+if redis.call('GET', KEYS[1]) == ARGV[1] then
+    return redis.call('PEXPIRE', KEYS[1], ARGV[2])
+end
+return 0
@@ -0,0 +1,16 @@
+-- 用数据库快照创建用户点赞集合，集合已加载（包含加载标记）时不写入
+-- KEYS[1] 用户点赞集合, KEYS[2] 点赞变更版本号（可选）
+-- ARGV[1] 集合过期时间（秒）, ARGV[2] 读取快照前的版本号（版本号不存在时为空字符串）, ARGV[3] 加载标记, ARGV[4..] 快照中的成员
+-- 读取快照期间有新的点赞变更（版本号变化）时不写入，避免旧快照恢复已取消的点赞；返回1表示已写入
+if redis.call('SISMEMBER', KEYS[1], ARGV[3]) == 1 then
+    return 0
+end
+if KEYS[2] and (redis.call('GET', KEYS[2]) or '') ~= ARGV[2] then
+    return 0
+end
+-- 分批写入，避免成员过多时超出unpack的参数个数限制
+for i = 3, #ARGV, 1000 do
+    redis.call('SADD', KEYS[1], unpack(ARGV, i, math.min(i + 999, #ARGV)))
+end
+redis.call('EXPIRE', KEYS[1], ARGV[1])
+return 1
@@ -0,0 +1,79 @@
+-- 按增量更新用户的各项排行榜，并在Redis内根据最新值重算综合评分
+-- KEYS[1] 动态数排行榜, KEYS[2] 点赞数排行榜, KEYS[3] 评论数排行榜, KEYS[4] 综合评分排行榜
+-- KEYS[5] 重建标记（值为正在执行的全量重建任务ID）
+-- KEYS[6..9] 调用方读到重建标记时传入该任务的影子排行榜（顺序同KEYS[1..4]），否则不传
+-- 其后为小时分桶排行榜，每个小时4个（顺序同KEYS[1..4]）
+-- ARGV[1] 用户成员, ARGV[2..4] 动态数/点赞数/评论数增量, ARGV[5..7] 对应的综合评分权重, ARGV[8] 分桶过期秒数
+-- ARGV[9] 调用方读到的重建任务ID（没有时为空串）, ARGV[10] 影子key过期秒数, ARGV[11..] 每个小时分桶的动态数/点赞数/评论数增量
+local member = ARGV[1]
+local bucketTtl = tonumber(ARGV[8])
+local jobId = ARGV[9]
+local bucketBase = 5
+if jobId ~= '' then
+    bucketBase = 9
+end
+local compositeScore = 0
+for i = 1, 3 do
+    local delta = tonumber(ARGV[i + 1])
+    local value
+    if delta ~= 0 then
+        value = tonumber(redis.call('ZINCRBY', KEYS[i], delta, member))
+    else
+        value = tonumber(redis.call('ZSCORE', KEYS[i], member) or 0)
+    end
+    compositeScore = compositeScore + value * tonumber(ARGV[i + 4])
+end
+redis.call('ZADD', KEYS[4], compositeScore, member)
+
+-- 正增量累加到分桶并续期；负增量撤销的是该小时内发生的活动，只在分桶包含该用户时扣减，且不低于0
+-- 返回实际累加的增量
+local function addToBucket(key, delta)
+    if delta > 0 then
+        redis.call('ZINCRBY', key, delta, member)
+        redis.call('EXPIRE', key, bucketTtl)
+        return delta
+    end
+    if delta < 0 then
+        local current = redis.call('ZSCORE', key, member)
+        if current then
+            local applied = math.max(delta, -tonumber(current))
+            if applied ~= 0 then
+                redis.call('ZINCRBY', key, applied, member)
+            end
+            return applied
+        end
+    end
+    return 0
+end
+
+-- 综合评分是各项的线性组合，分桶内直接累加实际生效的各项增量对应的综合评分增量
+for hour = 0, (#KEYS - bucketBase) / 4 - 1 do
+    local compositeDelta = 0
+    for i = 1, 3 do
+        local applied = addToBucket(KEYS[bucketBase + hour * 4 + i], tonumber(ARGV[10 + hour * 3 + i]))
+        compositeDelta = compositeDelta + applied * tonumber(ARGV[i + 4])
+    end
+    addToBucket(KEYS[bucketBase + hour * 4 + 4], compositeDelta)
+end
+
+-- 全量重建期间同时累加到影子排行榜，替换线上排行榜时不丢失重建期间的增量；
+-- 影子排行榜中的用户随后被快照覆盖时，以快照为准；
+-- 调用方读取标记后任务已提交或放弃时标记已变化，不再写入影子排行榜
+if jobId ~= '' and redis.call('GET', KEYS[5]) == jobId then
+    local shadowScore = 0
+    for i = 1, 3 do
+        local shadowKey = KEYS[5 + i]
+        local delta = tonumber(ARGV[i + 1])
+        local value
+        if delta ~= 0 then
+            value = tonumber(redis.call('ZINCRBY', shadowKey, delta, member))
+            redis.call('EXPIRE', shadowKey, ARGV[10])
+        else
+            value = tonumber(redis.call('ZSCORE', shadowKey, member) or 0)
+        end
+        shadowScore = shadowScore + value * tonumber(ARGV[i + 4])
+    end
+    redis.call('ZADD', KEYS[9], shadowScore, member)
+    redis.call('EXPIRE', KEYS[9], ARGV[10])
+end
+return compositeScore
@@ -0,0 +1,25 @@
+-- 一次调用获取用户在全部排行榜上的排名和分数，以及指定排行榜上前后K名的邻居
+-- KEYS[1..4] 动态数/点赞数/评论数/综合评分排行榜, KEYS[5] 获取邻居的排行榜
+-- ARGV[1] 用户成员, ARGV[2] 邻居数量K
+-- 返回: 每个排行榜的 排名, 分数（不在榜上时为 -1 和 0），随后是邻居起始排名（-1表示无邻居）和 成员, 分数 列表
+local member = ARGV[1]
+local k = tonumber(ARGV[2])
+local result = {}
+for i = 1, 4 do
+    local rank = redis.call('ZREVRANK', KEYS[i], member)
+    local score = redis.call('ZSCORE', KEYS[i], member)
+    result[#result + 1] = tostring(rank or -1)
+    result[#result + 1] = score or '0'
+end
+local rank = redis.call('ZREVRANK', KEYS[5], member)
+if not rank then
+    result[#result + 1] = '-1'
+    return result
+end
+local start = math.max(rank - k, 0)
+result[#result + 1] = tostring(start)
+local neighbours = redis.call('ZREVRANGE', KEYS[5], start, rank + k, 'WITHSCORES')
+for i = 1, #neighbours do
+    result[#result + 1] = neighbours[i]
+end
+return result
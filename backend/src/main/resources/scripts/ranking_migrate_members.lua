@@ -0,0 +1,23 @@
+-- 把旧格式（Jackson序列化，带双引号）的排行榜成员改写为十进制用户ID
+-- KEYS[1] 要迁移的排行榜; 综合评分排行榜另外传入 KEYS[2..4] 动态数/点赞数/评论数排行榜（均已迁移）
+-- ARGV[1] 模式: sum（分数累加到新成员）或 composite（按三项新值重算综合评分）, ARGV[2..4] 综合评分权重, ARGV[5..] 旧成员
+local migrated = 0
+for i = 5, #ARGV do
+    local legacy = ARGV[i]
+    local score = redis.call('ZSCORE', KEYS[1], legacy)
+    if score then
+        local member = string.sub(legacy, 2, -2)
+        redis.call('ZREM', KEYS[1], legacy)
+        if ARGV[1] == 'composite' then
+            local compositeScore = 0
+            for j = 1, 3 do
+                compositeScore = compositeScore + tonumber(redis.call('ZSCORE', KEYS[j + 1], member) or 0) * tonumber(ARGV[j + 1])
+            end
+            redis.call('ZADD', KEYS[1], compositeScore, member)
+        else
+            redis.call('ZINCRBY', KEYS[1], score, member)
+        end
+        migrated = migrated + 1
+    end
+end
+return migrated
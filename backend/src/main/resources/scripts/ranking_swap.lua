@@ -0,0 +1,21 @@
+-- 用影子key原子替换线上排行榜
+-- KEYS[1..n] 影子key, KEYS[n+1..2n] 线上key, KEYS[2n+1] 租约key, KEYS[2n+2] 重建标记
+-- ARGV[1] 期望的租约值，为空时不校验租约（手动触发）, ARGV[2] 重建任务ID
+local n = (#KEYS - 2) / 2
+if ARGV[1] ~= '' and redis.call('GET', KEYS[2 * n + 1]) ~= ARGV[1] then
+    return 0
+end
+for i = 1, n do
+    -- 没有任何用户时影子key不存在，直接清空线上排行榜
+    if redis.call('EXISTS', KEYS[i]) == 1 then
+        redis.call('RENAME', KEYS[i], KEYS[i + n])
+        redis.call('PERSIST', KEYS[i + n])
+    else
+        redis.call('DEL', KEYS[i + n])
+    end
+end
+-- 替换后不再向影子key同步增量
+if redis.call('GET', KEYS[2 * n + 2]) == ARGV[2] then
+    redis.call('DEL', KEYS[2 * n + 2])
+end
+return 1
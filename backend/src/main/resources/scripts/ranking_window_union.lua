@@ -0,0 +1,12 @@
+-- 合并小时分桶生成时间窗口排行榜，窗口排行榜已存在时直接返回
+-- 脚本在Redis内串行执行，缓存过期时并发的读取只有第一个会执行合并
+-- KEYS[1] 时间窗口排行榜, KEYS[2..] 窗口内的小时分桶
+-- ARGV[1] 时间窗口排行榜的缓存秒数
+if redis.call('EXISTS', KEYS[1]) == 1 then
+    return 0
+end
+redis.call('ZUNIONSTORE', KEYS[1], #KEYS - 1, unpack(KEYS, 2))
+-- 分数不低于0，兼容扣减规则调整前写入的负分
+redis.call('ZREMRANGEBYSCORE', KEYS[1], '-inf', '(0')
+redis.call('EXPIRE', KEYS[1], ARGV[1])
+return 1
@@ -0,0 +1,13 @@
+-- 把一条动态推送到一个关注者的首页时间线，只写入已存在的时间线（近期活跃的用户）
+-- 每次只处理一个时间线，调用方通过管道批量推送，兼容Redis集群（不同时间线位于不同槽位）
+-- KEYS[1] 关注者时间线
+-- ARGV[1] 动态ID（同时作为分数）, ARGV[2] 时间线容量上限
+if redis.call('EXISTS', KEYS[1]) == 0 then
+    return 0
+end
+local capacity = tonumber(ARGV[2])
+redis.call('ZADD', KEYS[1], ARGV[1], ARGV[1])
+if redis.call('ZCARD', KEYS[1]) > capacity then
+    redis.call('ZREMRANGEBYRANK', KEYS[1], 0, -capacity - 1)
+end
+return 1
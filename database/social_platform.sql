@@ -26,7 +26,9 @@ CREATE TABLE `comment_likes`  (
   `comment_id` bigint NOT NULL,
   `created_at` datetime(6) NULL DEFAULT NULL,
   `user_id` bigint NOT NULL,
-  PRIMARY KEY (`id`) USING BTREE
+  PRIMARY KEY (`id`) USING BTREE,
+  UNIQUE INDEX `unique_comment_like`(`user_id` ASC, `comment_id` ASC) USING BTREE,
+  INDEX `idx_comment_id`(`comment_id` ASC) USING BTREE
 ) ENGINE = InnoDB AUTO_INCREMENT = 23 CHARACTER SET = utf8mb4 COLLATE = utf8mb4_general_ci ROW_FORMAT = Dynamic;
 
 -- ----------------------------
@@ -48,8 +50,9 @@ CREATE TABLE `comments`  (
   `parent_id` bigint NULL DEFAULT NULL,
   `created_at` timestamp NULL DEFAULT CURRENT_TIMESTAMP,
   `like_count` int NULL DEFAULT NULL,
+  `reply_count` int NULL DEFAULT 0,
   PRIMARY KEY (`id`) USING BTREE,
-  INDEX `parent_id`(`parent_id` ASC) USING BTREE,
+  INDEX `idx_parent_created_at`(`parent_id` ASC, `created_at` ASC) USING BTREE,
   INDEX `idx_post_id`(`post_id` ASC) USING BTREE,
   INDEX `idx_user_id`(`user_id` ASC) USING BTREE,
   INDEX `idx_created_at`(`created_at` DESC) USING BTREE,
@@ -61,14 +64,14 @@ CREATE TABLE `comments`  (
 -- ----------------------------
 -- Records of comments
 -- ----------------------------
-INSERT INTO `comments` VALUES (10, 3, 21, '天气确实不错~👍', NULL, '2025-06-23 21:01:05', 1);
-INSERT INTO `comments` VALUES (11, 3, 21, '今天出去打球吗？⚽，🏀，运动员', NULL, '2025-06-23 21:01:41', 0);
-INSERT INTO `comments` VALUES (12, 2, 20, '222', NULL, '2025-06-23 21:03:20', 0);
-INSERT INTO `comments` VALUES (13, 1, 22, '123456', NULL, '2025-06-23 22:03:09', 0);
-INSERT INTO `comments` VALUES (14, 1, 23, '你好啊~~', NULL, '2025-06-23 22:08:38', 1);
-INSERT INTO `comments` VALUES (15, 1, 24, '你好····', NULL, '2025-06-23 22:12:58', 1);
-INSERT INTO `comments` VALUES (16, 2, 24, 'nihao~~', NULL, '2025-06-23 22:13:10', 0);
-INSERT INTO `comments` VALUES (17, 12, 27, 'wdaw', NULL, '2025-06-23 23:20:54', 0);
+INSERT INTO `comments` VALUES (10, 3, 21, '天气确实不错~👍', NULL, '2025-06-23 21:01:05', 1, 0);
+INSERT INTO `comments` VALUES (11, 3, 21, '今天出去打球吗？⚽，🏀，运动员', NULL, '2025-06-23 21:01:41', 0, 0);
+INSERT INTO `comments` VALUES (12, 2, 20, '222', NULL, '2025-06-23 21:03:20', 0, 0);
+INSERT INTO `comments` VALUES (13, 1, 22, '123456', NULL, '2025-06-23 22:03:09', 0, 0);
+INSERT INTO `comments` VALUES (14, 1, 23, '你好啊~~', NULL, '2025-06-23 22:08:38', 1, 0);
+INSERT INTO `comments` VALUES (15, 1, 24, '你好····', NULL, '2025-06-23 22:12:58', 1, 0);
+INSERT INTO `comments` VALUES (16, 2, 24, 'nihao~~', NULL, '2025-06-23 22:13:10', 0, 0);
+INSERT INTO `comments` VALUES (17, 12, 27, 'wdaw', NULL, '2025-06-23 23:20:54', 0, 0);
 
 -- ----------------------------
 -- Table structure for follows
@@ -166,6 +169,7 @@ CREATE TABLE `posts`  (
   INDEX `idx_user_id`(`user_id` ASC) USING BTREE,
   INDEX `idx_created_at`(`created_at` DESC) USING BTREE,
   INDEX `idx_like_count`(`like_count` DESC) USING BTREE,
+  INDEX `idx_user_created_at`(`user_id` ASC, `created_at` DESC) USING BTREE,
   CONSTRAINT `posts_ibfk_1` FOREIGN KEY (`user_id`) REFERENCES `users` (`id`) ON DELETE CASCADE ON UPDATE RESTRICT
 ) ENGINE = InnoDB AUTO_INCREMENT = 28 CHARACTER SET = utf8mb4 COLLATE = utf8mb4_general_ci ROW_FORMAT = Dynamic;
 